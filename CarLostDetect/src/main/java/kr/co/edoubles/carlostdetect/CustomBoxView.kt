@@ -1,48 +1,178 @@
 package kr.co.edoubles.carlostdetect
 
-import android.annotation.SuppressLint
 import android.content.Context
 import android.graphics.Canvas
 import android.graphics.Color
 import android.graphics.Paint
+import android.graphics.PixelFormat
+import android.graphics.PorterDuff
 import android.graphics.Rect
-import android.graphics.RectF
+import android.os.Handler
+import android.os.HandlerThread
+import android.os.SystemClock
 import android.util.AttributeSet
-import android.view.View
+import android.util.Log
+import android.view.Choreographer
+import android.view.SurfaceHolder
+import android.view.SurfaceView
 import androidx.core.content.ContextCompat
+import kr.co.edoubles.carlostdetect.detect.ObjectTracker
 import kr.co.edoubles.carlostdetect.utils.TEXT_PADDING
 import org.tensorflow.lite.task.vision.detector.Detection
+import java.util.concurrent.atomic.AtomicBoolean
 import kotlin.math.max
+import kotlin.math.roundToInt
 
 /**
  * Custom box view
  * 탐지된 물체를 확인 하기 위한 CustomView (물체를 직사각형으로 감싸는 View)
+ *
+ * 카메라 화면 위의 투명한 전용 Surface 에 그리며, 그리기는 Main Thread 가 아닌 전용 Thread 에서
+ * Choreographer 의 vsync 에 맞춰 필요할 때만 수행한다.
+ * 탐지 결과는 미리 할당한 BoxFrame 3 개 (producer / ready / front) 를 교환하며 전달하고,
+ * Label 문자열과 Box 좌표는 slot 별로 보관하므로 그릴 때 할당이 없다.
  */
 class CustomBoxView(
     context: Context,
     attrs: AttributeSet,
-) : View(context, attrs) {
+) : SurfaceView(context, attrs), SurfaceHolder.Callback {
+
+    /**
+     * 한 번에 그릴 탐지 결과 (Box 는 이미지 좌표)
+     */
+    private class BoxFrame {
+        var count = 0
+        var imageWidth = 0
+        var imageHeight = 0
+        var left = FloatArray(INITIAL_CAPACITY)
+        var top = FloatArray(INITIAL_CAPACITY)
+        var right = FloatArray(INITIAL_CAPACITY)
+        var bottom = FloatArray(INITIAL_CAPACITY)
+        var scores = FloatArray(INITIAL_CAPACITY)
+        var labels = arrayOfNulls<String>(INITIAL_CAPACITY)
+
+        fun set(results: List<Detection>, imageWidth: Int, imageHeight: Int) {
+            ensureCapacity(results.size)
+            for (i in results.indices) {
+                val result = results[i]
+                val box = result.boundingBox
+                left[i] = box.left
+                top[i] = box.top
+                right[i] = box.right
+                bottom[i] = box.bottom
+                scores[i] = result.categories[0].score
+                labels[i] = result.categories[0].label
+            }
+            count = results.size
+            this.imageWidth = imageWidth
+            this.imageHeight = imageHeight
+        }
+
+        private fun ensureCapacity(size: Int) {
+            if (size <= labels.size) return
+            val capacity = max(size, labels.size * 2)
+            left = left.copyOf(capacity)
+            top = top.copyOf(capacity)
+            right = right.copyOf(capacity)
+            bottom = bottom.copyOf(capacity)
+            scores = scores.copyOf(capacity)
+            labels = labels.copyOf(capacity)
+        }
+    }
+
+    // Producer -> Render Thread 전달용 (lock 안에서는 참조 교환만 수행)
+    private val frameLock = Any()
+    private var producerFrame = BoxFrame()
+    private var readyFrame = BoxFrame()
+    private var frontFrame = BoxFrame()
+    private var frameDirty = false
+
+    // 설정되면 추론 결과 대신 추적기가 예측한 Box 를 화면 갱신 주기마다 그림
+    @Volatile
+    var tracker: ObjectTracker? = null
+    private val trackedResults: MutableList<Detection> = mutableListOf()
+    private val trackedFrame = BoxFrame()
 
-    // 탐지된 물건에 대한 정보가 담겨 있는 List
-    private var results: MutableList<Detection> = mutableListOf()
     private var boxPaint = Paint()
     private var textBackgroundPaint = Paint()
     private var textPaint = Paint()
+    private var bounds = Rect()
 
-    private var scaleFactor: Float = 1f
+    // Render Thread 에서만 사용하는 slot 별 Label 문자열 캐시 ("label 0.87")
+    private var textLabels = arrayOfNulls<String>(INITIAL_CAPACITY)
+    private var textScores = IntArray(INITIAL_CAPACITY) { -1 }
+    private var textChars = Array(INITIAL_CAPACITY) { CharArray(TEXT_CHARS) }
+    private var textLengths = IntArray(INITIAL_CAPACITY)
+    private var textWidths = IntArray(INITIAL_CAPACITY)
+    private var textHeights = IntArray(INITIAL_CAPACITY)
 
-    private var bounds = Rect()
+    private var renderThread: HandlerThread? = null
+    private var renderHandler: Handler? = null
+    private var choreographer: Choreographer? = null
+    private val frameScheduled = AtomicBoolean(false)
+
+    @Volatile
+    private var surfaceReady = false
+    @Volatile
+    private var surfaceWidth = 0
+    @Volatile
+    private var surfaceHeight = 0
+
+    private val scheduleFrame = Runnable {
+        val current = choreographer ?: Choreographer.getInstance().also { choreographer = it }
+        current.postFrameCallback(frameCallback)
+    }
+
+    private val frameCallback = Choreographer.FrameCallback { render() }
 
     init {
         initPaints()
+        setZOrderMediaOverlay(true)
+        holder.setFormat(PixelFormat.TRANSLUCENT)
+        holder.addCallback(this)
+    }
+
+    override fun onAttachedToWindow() {
+        super.onAttachedToWindow()
+        val thread = HandlerThread("OverlayRenderThread").also { it.start() }
+        renderThread = thread
+        renderHandler = Handler(thread.looper)
+    }
+
+    override fun onDetachedFromWindow() {
+        surfaceReady = false
+        renderHandler?.removeCallbacksAndMessages(null)
+        renderThread?.quitSafely()
+        renderThread = null
+        renderHandler = null
+        choreographer = null
+        frameScheduled.set(false)
+        super.onDetachedFromWindow()
+    }
+
+    override fun surfaceCreated(holder: SurfaceHolder) {
+    }
+
+    override fun surfaceChanged(holder: SurfaceHolder, format: Int, width: Int, height: Int) {
+        surfaceWidth = width
+        surfaceHeight = height
+        surfaceReady = true
+        requestRender()
+    }
+
+    override fun surfaceDestroyed(holder: SurfaceHolder) {
+        // 이후 그리기는 건너뜀 (Render Thread 가 그리는 중이면 lock 이 풀릴 때까지 대기)
+        surfaceReady = false
+        synchronized(holder) {}
     }
 
     fun clear() {
-        textPaint.reset()
-        textBackgroundPaint.reset()
-        boxPaint.reset()
-        invalidate()
-        initPaints()
+        synchronized(frameLock) {
+            producerFrame.count = 0
+            readyFrame.count = 0
+            frameDirty = true
+        }
+        requestRender()
     }
 
     private fun initPaints() {
@@ -59,49 +189,151 @@ class CustomBoxView(
         boxPaint.style = Paint.Style.STROKE
     }
 
+    /**
+     * 새 탐지 결과 전달 (어느 Thread 에서나 호출 가능, 호출은 한 Thread 에서만)
+     */
     fun setResults(
         detectionResults: List<Detection>,
         imageHeight: Int,
         imageWidth: Int,
     ) {
-        results.clear()
-        results.addAll(detectionResults)
+        val frame = producerFrame
+        frame.set(detectionResults, imageWidth, imageHeight)
+        synchronized(frameLock) {
+            producerFrame = readyFrame
+            readyFrame = frame
+            frameDirty = true
+        }
+        requestRender()
+    }
 
-        scaleFactor = max(width * 1f / imageWidth, height * 1f / imageHeight)
-        // invalidate()를 반드시 호출 해야 그림을 그린다
-        invalidate()
+    /**
+     * 다음 vsync 에 한 번 그리도록 요청 (이미 요청되어 있으면 무시)
+     */
+    fun requestRender() {
+        val handler = renderHandler ?: return
+        if (frameScheduled.compareAndSet(false, true)) {
+            handler.post(scheduleFrame)
+        }
     }
 
-    @SuppressLint("DrawAllocation", "DefaultLocale")
-    override fun onDraw(canvas: Canvas) {
-        for (result in results) {
-            val boundingBox = result.boundingBox
+    /**
+     * Render Thread 에서 vsync 마다 호출
+     */
+    private fun render() {
+        frameScheduled.set(false)
+        synchronized(frameLock) {
+            if (frameDirty) {
+                val frame = frontFrame
+                frontFrame = readyFrame
+                readyFrame = frame
+                frameDirty = false
+            }
+        }
+
+        var drawing = frontFrame
+        var moving = false
+        tracker?.let {
+            // 움직이는 물체가 있으면 다음 vsync 때 다시 예측해서 그림
+            moving = it.predict(SystemClock.uptimeMillis(), trackedResults)
+            trackedFrame.set(trackedResults, frontFrame.imageWidth, frontFrame.imageHeight)
+            drawing = trackedFrame
+        }
 
-            val top = boundingBox.top * scaleFactor
-            val bottom = boundingBox.bottom * scaleFactor
-            val left = boundingBox.left * scaleFactor
-            val right = boundingBox.right * scaleFactor
+        if (surfaceReady) {
+            draw(drawing)
+        }
+        if (moving) {
+            requestRender()
+        }
+    }
 
-            val drawableRect = RectF(left, top, right, bottom)
-            canvas.drawRect(drawableRect, boxPaint)
+    private fun draw(frame: BoxFrame) {
+        val surfaceHolder = holder
+        synchronized(surfaceHolder) {
+            if (!surfaceReady) return
+            val canvas: Canvas = try {
+                surfaceHolder.surface.lockHardwareCanvas()
+            } catch (e: Exception) {
+                Log.e(TAG, "lockHardwareCanvas 실패", e)
+                return
+            }
+            try {
+                canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR)
+                drawBoxes(canvas, frame)
+            } finally {
+                surfaceHolder.surface.unlockCanvasAndPost(canvas)
+            }
+        }
+    }
 
-            val drawableText =
-                result.categories[0].label + " " +
-                        String.format("%.2f", result.categories[0].score)
+    private fun drawBoxes(canvas: Canvas, frame: BoxFrame) {
+        if (frame.count == 0 || frame.imageWidth <= 0 || frame.imageHeight <= 0) return
+        val scaleFactor = max(surfaceWidth * 1f / frame.imageWidth, surfaceHeight * 1f / frame.imageHeight)
+        ensureTextCapacity(frame.count)
 
-            textBackgroundPaint.getTextBounds(drawableText, 0, drawableText.length, bounds)
+        for (i in 0 until frame.count) {
+            val top = frame.top[i] * scaleFactor
+            val bottom = frame.bottom[i] * scaleFactor
+            val left = frame.left[i] * scaleFactor
+            val right = frame.right[i] * scaleFactor
+            canvas.drawRect(left, top, right, bottom, boxPaint)
 
-            val textWidth = bounds.width()
-            val textHeight = bounds.height()
+            updateText(i, frame.labels[i] ?: "", frame.scores[i])
             canvas.drawRect(
                 left,
                 top,
-                left + textWidth + TEXT_PADDING,
-                top + textHeight + TEXT_PADDING,
+                left + textWidths[i] + TEXT_PADDING,
+                top + textHeights[i] + TEXT_PADDING,
                 textBackgroundPaint
             )
+            canvas.drawText(textChars[i], 0, textLengths[i], left, top + textHeights[i], textPaint)
+        }
+    }
+
+    /**
+     * slot 의 Label / Score 가 바뀌었을 때만 "label 0.87" 문자열과 크기를 다시 계산
+     */
+    private fun updateText(slot: Int, label: String, score: Float) {
+        val scoreCode = (score * 100).roundToInt().coerceIn(0, 100)
+        if (textLabels[slot] == label && textScores[slot] == scoreCode) return
 
-            canvas.drawText(drawableText, left, top + bounds.height(), textPaint)
+        val length = label.length + 5
+        if (textChars[slot].size < length) {
+            textChars[slot] = CharArray(length)
         }
+        val chars = textChars[slot]
+        label.toCharArray(chars, 0, 0, label.length)
+        var index = label.length
+        chars[index++] = ' '
+        chars[index++] = '0' + scoreCode / 100
+        chars[index++] = '.'
+        chars[index++] = '0' + scoreCode / 10 % 10
+        chars[index] = '0' + scoreCode % 10
+
+        textBackgroundPaint.getTextBounds(chars, 0, length, bounds)
+        textLabels[slot] = label
+        textScores[slot] = scoreCode
+        textLengths[slot] = length
+        textWidths[slot] = bounds.width()
+        textHeights[slot] = bounds.height()
+    }
+
+    private fun ensureTextCapacity(size: Int) {
+        if (size <= textLabels.size) return
+        val capacity = max(size, textLabels.size * 2)
+        val oldSize = textLabels.size
+        textLabels = textLabels.copyOf(capacity)
+        textScores = textScores.copyOf(capacity).also { it.fill(-1, oldSize) }
+        textChars = Array(capacity) { if (it < oldSize) textChars[it] else CharArray(TEXT_CHARS) }
+        textLengths = textLengths.copyOf(capacity)
+        textWidths = textWidths.copyOf(capacity)
+        textHeights = textHeights.copyOf(capacity)
+    }
+
+    companion object {
+        private const val TAG = "CustomBoxView"
+        private const val INITIAL_CAPACITY = 16
+        private const val TEXT_CHARS = 32
     }
-}
\ No newline at end of file
+}
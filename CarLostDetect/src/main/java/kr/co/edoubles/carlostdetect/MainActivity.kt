@@ -20,12 +20,10 @@ import androidx.core.app.ActivityCompat
 import androidx.core.content.edit
 import androidx.core.view.ViewCompat
 import androidx.core.view.WindowInsetsCompat
-import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.launch
 import kr.co.edoubles.carlostdetect.databinding.ActivityMainBinding
 import kr.co.edoubles.carlostdetect.service.CarLostDetectService
 import kr.co.edoubles.carlostdetect.service.ServiceListener
+import kr.co.edoubles.carlostdetect.service.UiStateChannel
 import kr.co.edoubles.carlostdetect.utils.PermissionUtil
 import org.tensorflow.lite.task.vision.detector.Detection
 import org.webrtc.EglBase
@@ -35,7 +33,8 @@ import org.webrtc.VideoSink
 import org.webrtc.VideoTrack
 
 
-class MainActivity : AppCompatActivity(), ActivityCompat.OnRequestPermissionsResultCallback, ServiceListener {
+class MainActivity : AppCompatActivity(), ActivityCompat.OnRequestPermissionsResultCallback, ServiceListener,
+    UiStateChannel.Observer {
     private lateinit var binding: ActivityMainBinding
 
     private lateinit var mainPreferences: SharedPreferences
@@ -45,6 +44,7 @@ class MainActivity : AppCompatActivity(), ActivityCompat.OnRequestPermissionsRes
     private lateinit var videoTrack: VideoTrack
     private lateinit var videoSink: VideoSink
     private var isActive: Boolean = false
+    private var isStarted: Boolean = false
 
     /**
      * CarLostDetectService 와 Bind 하는데 사용하는 변수들
@@ -62,10 +62,17 @@ class MainActivity : AppCompatActivity(), ActivityCompat.OnRequestPermissionsRes
 
             carLostDetectService.setIsActive(isActive)
             carLostDetectService.setVideoTrackListener(this@MainActivity)
+            // 추론 사이의 Box 는 추적기 예측 값으로 부드럽게 표시
+            binding.customBoxView.tracker = carLostDetectService.objectTracker
+            binding.customBoxView.requestRender()
+            if (isStarted) {
+                carLostDetectService.uiStateChannel.attach(this@MainActivity)
+            }
             startService()
         }
 
         override fun onServiceDisconnected(name: ComponentName) {
+            carLostDetectService.uiStateChannel.detach(this@MainActivity)
             isBound = false
         }
     }
@@ -86,9 +93,7 @@ class MainActivity : AppCompatActivity(), ActivityCompat.OnRequestPermissionsRes
 
         // CarLostDetectService를 정지시키는 Button 동작
         binding.btnStop.setOnClickListener {
-            if (::videoTrack.isInitialized) {
-                videoTrack.removeSink(videoSink)
-            }
+            detachPreview()
             stopService()
         }
 
@@ -114,6 +119,26 @@ class MainActivity : AppCompatActivity(), ActivityCompat.OnRequestPermissionsRes
         eglBase = EglBaseManager.getEglBaseInstance()
         // SurfaceViewRenderer 초기화
         initSurfaceViewRenderer(binding.cameraLayout)
+        videoSink = binding.cameraLayout
+    }
+
+    override fun onStart() {
+        super.onStart()
+        isStarted = true
+        // 화면이 보이는 동안만 탐지 상태를 받음
+        if (isBound) {
+            carLostDetectService.uiStateChannel.attach(this)
+            attachPreview()
+        }
+    }
+
+    override fun onStop() {
+        isStarted = false
+        if (isBound) {
+            carLostDetectService.uiStateChannel.detach(this)
+            detachPreview()
+        }
+        super.onStop()
     }
 
     override fun onResume() {
@@ -122,8 +147,6 @@ class MainActivity : AppCompatActivity(), ActivityCompat.OnRequestPermissionsRes
         isActive = mainPreferences.getBoolean("isActive", false)
         binding.switchLostItemDetection.setChecked(isActive)
 
-        videoSink = binding.cameraLayout
-
         // 배터리 최적화 기능 비활성화
         ignoreBatteryOptimizations()
         // CarLostDetectService와 Binding하여 Service 실행
@@ -221,6 +244,7 @@ class MainActivity : AppCompatActivity(), ActivityCompat.OnRequestPermissionsRes
      */
     private fun stopService() {
         if (isBound) {
+            carLostDetectService.uiStateChannel.detach(this)
             unbindService(connection)
             isBound = false
         }
@@ -235,17 +259,35 @@ class MainActivity : AppCompatActivity(), ActivityCompat.OnRequestPermissionsRes
      */
     override fun onVideoTrackReceived(videoTrack: VideoTrack) {
         this.videoTrack = videoTrack
-        videoTrack.addSink(videoSink)
+        if (isStarted) {
+            attachPreview()
+        }
     }
 
-    override fun setLostString(lost: String?) {
-        CoroutineScope(Dispatchers.Main).launch {
-            binding.txtLost.setText("두고 간 물건 : $lost")
+    /**
+     * 미리보기는 Track 대신 Service 의 FrameFanout 에 PREVIEW_FPS 로 등록 (화면이 보일 때만)
+     */
+    private fun attachPreview() {
+        if (isBound && ::videoTrack.isInitialized) {
+            carLostDetectService.addPreviewSink(videoSink)
         }
     }
 
-    override fun drawCustomBox(
-        results: MutableList<Detection>,
+    private fun detachPreview() {
+        if (isBound) {
+            carLostDetectService.removePreviewSink(videoSink)
+        }
+    }
+
+    /**
+     * UiStateChannel.Observer Interface Method (Main Thread, vsync 마다 최대 한 번)
+     */
+    override fun onLostState(lost: String) {
+        binding.txtLost.setText("두고 간 물건 : $lost")
+    }
+
+    override fun onDetectionState(
+        results: List<Detection>,
         imageHeight: Int,
         imageWidth: Int
     ) {
@@ -256,10 +298,6 @@ class MainActivity : AppCompatActivity(), ActivityCompat.OnRequestPermissionsRes
         )
     }
 
-    override fun invalidateCustomBox() {
-        binding.customBoxView.invalidate()
-    }
-
     companion object {
         private const val TAG = "MainActivity"
     }
@@ -270,14 +308,12 @@ class MainActivity : AppCompatActivity(), ActivityCompat.OnRequestPermissionsRes
         EglBaseManager.setMainActivityState(false);
 
         if (isBound) {
+            carLostDetectService.uiStateChannel.detach(this)
+            detachPreview()
             unbindService(connection)
             isBound = false
         }
 
-        if (::videoTrack.isInitialized) {
-            videoTrack.removeSink(videoSink)
-        }
-
         super.onDestroy()
     }
 }
\ No newline at end of file
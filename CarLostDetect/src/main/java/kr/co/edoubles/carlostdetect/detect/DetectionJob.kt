@@ -0,0 +1,52 @@
+package kr.co.edoubles.carlostdetect.detect
+
+import org.tensorflow.lite.task.vision.detector.Detection
+
+/**
+ * Detection job
+ * 변환 -> 추론 -> 후처리 Pipeline 사이를 오가는 프레임 단위 작업
+ * bank 별로 미리 만들어 두고 재사용하며, 같은 bank 의 변환 버퍼를 사용한다 (단계 별로 다른 bank)
+ *
+ * @param bank : 사용할 변환 버퍼 묶음 번호
+ */
+class DetectionJob(val bank: Int) {
+
+    // 변환 단계에서 채워지는 값들
+    var pool: FrameBufferPool? = null
+    val frameBuffers = ArrayList<FrameBufferPool.FrameBuffers>()
+    var rois: List<DetectionRoi> = emptyList()
+
+    // 이번 프레임에서 변환한 첫 ROI 번호 (frameBuffers[k] 는 rois[(roiStart + k) % rois.size])
+    var roiStart = 0
+
+    // ROI 를 쓰는 중에 Heatmap 학습을 위해 전체 프레임을 변환한 작업
+    var learning = false
+    var timestampNs = 0L
+    var startTime = 0L
+
+    // 장면 변화가 없어 이전 결과를 재사용하는 작업
+    var reused = false
+
+    // 변환 이후 Backend 가 바뀌어 결과를 전달하지 않는 작업
+    var discarded = false
+
+    // 추론 단계에서 채워지는 값들
+    var results: MutableList<Detection>? = null
+    var inferenceTime = 0L
+    var imageWidth = 0
+    var imageHeight = 0
+
+    fun reset() {
+        pool = null
+        frameBuffers.clear()
+        rois = emptyList()
+        roiStart = 0
+        learning = false
+        reused = false
+        discarded = false
+        results = null
+        inferenceTime = 0L
+        imageWidth = 0
+        imageHeight = 0
+    }
+}
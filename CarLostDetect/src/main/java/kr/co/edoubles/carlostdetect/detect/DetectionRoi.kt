@@ -0,0 +1,79 @@
+package kr.co.edoubles.carlostdetect.detect
+
+import android.graphics.RectF
+
+/**
+ * Detection roi
+ * 탐지를 수행할 차량 내부 영역 (좌석, 발판, 컵홀더 등)
+ * 좌표는 회전이 적용된 프레임 기준 0~1 로 정규화된 다각형 꼭짓점 [x0, y0, x1, y1, ...]
+ *
+ * @param name : 영역 이름
+ * @param polygon : 다각형 꼭짓점
+ */
+data class DetectionRoi(
+    val name: String,
+    val polygon: FloatArray
+) {
+
+    // 다각형을 감싸는 사각형 (모델 입력으로 잘라낼 영역)
+    @Transient
+    private var cachedBounds: RectF? = null
+
+    val bounds: RectF
+        get() = cachedBounds ?: computeBounds().also { cachedBounds = it }
+
+    private fun computeBounds(): RectF {
+        val rect = RectF(1f, 1f, 0f, 0f)
+        for (i in 0 until polygon.size / 2) {
+            val x = polygon[i * 2].coerceIn(0f, 1f)
+            val y = polygon[i * 2 + 1].coerceIn(0f, 1f)
+            rect.left = minOf(rect.left, x)
+            rect.top = minOf(rect.top, y)
+            rect.right = maxOf(rect.right, x)
+            rect.bottom = maxOf(rect.bottom, y)
+        }
+        return rect
+    }
+
+    /**
+     * 정규화 좌표 (x, y) 가 다각형 내부인지 확인 (Ray casting)
+     */
+    fun contains(x: Float, y: Float): Boolean {
+        val count = polygon.size / 2
+        var inside = false
+        var j = count - 1
+        for (i in 0 until count) {
+            val xi = polygon[i * 2]
+            val yi = polygon[i * 2 + 1]
+            val xj = polygon[j * 2]
+            val yj = polygon[j * 2 + 1]
+            if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                inside = !inside
+            }
+            j = i
+        }
+        return inside
+    }
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is DetectionRoi) return false
+        return name == other.name && polygon.contentEquals(other.polygon)
+    }
+
+    override fun hashCode(): Int {
+        return 31 * name.hashCode() + polygon.contentHashCode()
+    }
+
+    companion object {
+        /**
+         * 사각형 영역으로 ROI 생성
+         */
+        fun fromRect(name: String, rect: RectF): DetectionRoi {
+            return DetectionRoi(
+                name,
+                floatArrayOf(rect.left, rect.top, rect.right, rect.top, rect.right, rect.bottom, rect.left, rect.bottom)
+            )
+        }
+    }
+}
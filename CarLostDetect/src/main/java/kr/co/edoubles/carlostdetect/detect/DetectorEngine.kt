@@ -0,0 +1,42 @@
+package kr.co.edoubles.carlostdetect.detect
+
+import org.tensorflow.lite.task.vision.detector.Detection
+
+/**
+ * Detector engine
+ * ObjectDetectorHelper 가 사용하는 추론 Backend 의 공통 Interface
+ * 결과 Box 는 모델 입력 (Letterbox 적용) 좌표 기준으로 반환한다
+ */
+interface DetectorEngine {
+
+    // 모델 입력 크기 (FrameBufferPool 생성에 사용)
+    val inputWidth: Int
+    val inputHeight: Int
+
+    // 모델 입력 값 변환 Table (양자화 입력 모델은 I420 에서 바로 양자화 값을 쓴다)
+    val pixelLut: ByteArray
+        get() = YuvToRgbConverter.IDENTITY_LUT
+
+    /**
+     * 모델 로드 및 초기화 (실패 시 예외 발생)
+     */
+    fun setup()
+
+    /**
+     * @param frameBuffers : converter 의 RGB 버퍼가 채워진 버퍼 묶음
+     */
+    fun detect(frameBuffers: FrameBufferPool.FrameBuffers): MutableList<Detection>?
+
+    fun close()
+}
+
+/**
+ * 실행 중 선택 가능한 추론 Backend 종류
+ */
+enum class DetectorEngineType {
+    // TFLite Task Library ObjectDetector
+    TASK_LIBRARY,
+
+    // tensorflow-lite Interpreter 직접 사용 (XNNPACK, Thread 수 지정)
+    INTERPRETER
+}
@@ -13,6 +13,7 @@ interface DetectorListener {
         results: MutableList<Detection>?,
         inferenceTime: Long,
         imageHeight: Int,
-        imageWidth: Int
+        imageWidth: Int,
+        timestampNs: Long
     )
 }
\ No newline at end of file
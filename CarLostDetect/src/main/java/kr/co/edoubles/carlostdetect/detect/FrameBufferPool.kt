@@ -0,0 +1,94 @@
+package kr.co.edoubles.carlostdetect.detect
+
+import org.tensorflow.lite.DataType
+import org.tensorflow.lite.support.image.TensorImage
+import org.tensorflow.lite.support.tensorbuffer.TensorBuffer
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Frame buffer pool
+ * 해상도 / 회전 값 / ROI / bank 별로 변환 버퍼, 입력 Tensor, 회전 Lookup Table 을 미리 만들어 재사용하는 Pool
+ * 같은 조건의 프레임이 계속 들어오는 정상 상태에서는 프레임 당 할당이 발생하지 않는다
+ *
+ * @param inputWidth : 모델 입력 가로 크기
+ * @param inputHeight : 모델 입력 세로 크기
+ * @param pixelLut : 모델 입력 값 변환 Table (양자화 모델용)
+ * @param maxEntries : 유지할 최대 조건 수 (초과 시 가장 오래 사용하지 않은 항목 제거)
+ */
+class FrameBufferPool(
+    val inputWidth: Int,
+    val inputHeight: Int,
+    val pixelLut: ByteArray = YuvToRgbConverter.IDENTITY_LUT,
+    private val maxEntries: Int = DEFAULT_MAX_ENTRIES
+) {
+
+    /**
+     * 한 가지 입력 조건에 필요한 버퍼 묶음
+     * converter 가 회전 / Letterbox Lookup Table 과 RGB 버퍼를 가지고 있다
+     */
+    class FrameBuffers(inputWidth: Int, inputHeight: Int, pixelLut: ByteArray) {
+        val converter = YuvToRgbConverter(inputWidth, inputHeight, pixelLut)
+        val inputBuffer: TensorBuffer = TensorBuffer.createFixedSize(
+            intArrayOf(inputHeight, inputWidth, YuvToRgbConverter.CHANNELS),
+            DataType.UINT8
+        )
+        val tensorImage = TensorImage(DataType.UINT8)
+    }
+
+    // 접근 순서 기준 LRU
+    private val entries = object : LinkedHashMap<Long, FrameBuffers>(maxEntries + 1, 1f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Long, FrameBuffers>?): Boolean {
+            return size > maxEntries
+        }
+    }
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    val hitCount: Long
+        get() = hits.get()
+
+    val missCount: Long
+        get() = misses.get()
+
+    /**
+     * 입력 조건에 맞는 버퍼 묶음을 반환 (없으면 생성)
+     * @param slot : 같은 프레임을 여러 영역 (ROI) 으로 나눌 때 영역 번호 (0~15)
+     * @param bank : Pipeline 에서 변환 / 추론 / 후처리가 겹칠 때 사용하는 버퍼 번호 (0~BANKS-1)
+     */
+    @Synchronized
+    @JvmOverloads
+    fun acquire(width: Int, height: Int, rotation: Int, slot: Int = 0, bank: Int = 0): FrameBuffers {
+        val key = key(width, height, rotation, slot, bank)
+        val cached = entries[key]
+        if (cached != null) {
+            hits.incrementAndGet()
+            return cached
+        }
+
+        misses.incrementAndGet()
+        return FrameBuffers(inputWidth, inputHeight, pixelLut).also { entries[key] = it }
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+    }
+
+    override fun toString(): String {
+        return "FrameBufferPool(hit=${hits.get()}, miss=${misses.get()})"
+    }
+
+    companion object {
+        private const val DEFAULT_MAX_ENTRIES = 8
+
+        // 변환 / 추론 / 후처리가 동시에 다른 프레임을 가질 수 있도록 단계 수 만큼의 bank 사용
+        const val BANKS = 3
+
+        private fun key(width: Int, height: Int, rotation: Int, slot: Int, bank: Int): Long {
+            val normalized = ((rotation % 360) + 360) % 360 / 90
+            return (width.toLong() shl 39) or (height.toLong() shl 9) or
+                    ((slot.toLong() and 0xF) shl 4) or ((bank.toLong() and 0x3) shl 2) or normalized.toLong()
+        }
+    }
+}
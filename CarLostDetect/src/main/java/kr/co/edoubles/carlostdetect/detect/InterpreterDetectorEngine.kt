@@ -0,0 +1,223 @@
+package kr.co.edoubles.carlostdetect.detect
+
+import android.graphics.RectF
+import org.tensorflow.lite.DataType
+import org.tensorflow.lite.Interpreter
+import org.tensorflow.lite.support.label.Category
+import org.tensorflow.lite.task.vision.detector.Detection
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Interpreter detector engine
+ * tensorflow-lite Interpreter 를 직접 사용하는 SSD 계열 모델 Backend
+ * XNNPACK 사용 여부와 Thread 수를 지정할 수 있고, 입력 / 출력 버퍼를 미리 할당해 재사용한다
+ * 입력 Tensor 타입을 보고 입력 경로를 고른다
+ * - UINT8 / INT8 : 양자화 값 Table 을 통해 I420 에서 바로 입력 버퍼를 채움 (float 변환 없음)
+ * - FLOAT32 : RGB 버퍼를 (값 - mean) / std 로 정규화
+ * 정규화 값은 모델 Metadata (NormalizationOptions) 에서 읽어 normalization 으로 넘겨 받는다.
+ * 정보가 없으면 float 모델은 MobileNet 계열 [-1, 1] 을 가정하고, 양자화 모델은 픽셀 값을 그대로 넣는다
+ * (UINT8 은 0~255, INT8 은 -128~127).
+ *
+ * 출력은 TFLite_Detection_PostProcess 형식 (boxes [1,N,4], classes [1,N], scores [1,N], count [1])을 가정하며,
+ * boxes 와 count 는 shape 으로 찾고 나머지 두 출력은 index 순서대로 classes, scores 로 사용한다
+ */
+class InterpreterDetectorEngine(
+    private val model: ByteBuffer,
+    private val labels: List<String>,
+    private val threshold: Float,
+    private val maxResults: Int,
+    private val numThreads: Int,
+    private val useXnnpack: Boolean = true,
+    private val normalization: Normalization? = null
+) : DetectorEngine {
+
+    /**
+     * 모델 입력 정규화 값 (입력 = (픽셀 - mean) / std)
+     */
+    data class Normalization(val mean: Float, val std: Float)
+
+    private val floatMean = normalization?.mean ?: IMAGE_MEAN
+    private val floatStd = normalization?.std ?: IMAGE_STD
+
+    private var interpreter: Interpreter? = null
+
+    override var inputWidth = 0
+        private set
+    override var inputHeight = 0
+        private set
+
+    var inputType = DataType.UINT8
+        private set
+
+    val isQuantized: Boolean
+        get() = inputType == DataType.UINT8 || inputType == DataType.INT8
+
+    override var pixelLut = YuvToRgbConverter.IDENTITY_LUT
+        private set
+
+    // FLOAT32 입력 모델 용 정규화 버퍼
+    private var floatInput: ByteBuffer? = null
+
+    // 미리 할당된 입력 / 출력 버퍼
+    private val inputs = arrayOfNulls<Any>(1)
+    private val outputs = HashMap<Int, Any>()
+    private lateinit var boxesBuffer: ByteBuffer
+    private lateinit var classesBuffer: ByteBuffer
+    private lateinit var scoresBuffer: ByteBuffer
+    private lateinit var countBuffer: ByteBuffer
+    private var maxDetections = 0
+
+    override fun setup() {
+        val options = Interpreter.Options()
+            .setNumThreads(numThreads)
+            .setUseXNNPACK(useXnnpack)
+        val created = Interpreter(model, options)
+
+        try {
+            val inputTensor = created.getInputTensor(0)
+            val shape = inputTensor.shape()
+            inputHeight = shape[1]
+            inputWidth = shape[2]
+            inputType = inputTensor.dataType()
+            when (inputType) {
+                DataType.FLOAT32 -> {
+                    floatInput = ByteBuffer.allocateDirect(inputWidth * inputHeight * YuvToRgbConverter.CHANNELS * 4)
+                        .order(ByteOrder.nativeOrder())
+                }
+
+                DataType.UINT8, DataType.INT8 -> {
+                    val params = inputTensor.quantizationParams()
+                    pixelLut = createQuantizedLut(inputType, params.scale, params.zeroPoint, normalization)
+                }
+
+                else -> throw IllegalArgumentException("지원하지 않는 입력 타입 : $inputType")
+            }
+
+            allocateOutputs(created)
+        } catch (e: Exception) {
+            created.close()
+            throw e
+        }
+
+        interpreter = created
+    }
+
+    private fun allocateOutputs(interpreter: Interpreter) {
+        var boxesIndex = -1
+        var countIndex = -1
+        val others = ArrayList<Int>(2)
+
+        for (i in 0 until interpreter.outputTensorCount) {
+            val shape = interpreter.getOutputTensor(i).shape()
+            when {
+                shape.size == 3 && shape[2] == 4 -> boxesIndex = i
+                shape.size == 1 -> countIndex = i
+                else -> others.add(i)
+            }
+        }
+        require(boxesIndex >= 0 && countIndex >= 0 && others.size == 2) {
+            "지원하지 않는 출력 형식의 모델"
+        }
+
+        maxDetections = interpreter.getOutputTensor(boxesIndex).shape()[1]
+        boxesBuffer = allocate(interpreter, boxesIndex)
+        classesBuffer = allocate(interpreter, others[0])
+        scoresBuffer = allocate(interpreter, others[1])
+        countBuffer = allocate(interpreter, countIndex)
+
+        outputs.clear()
+        outputs[boxesIndex] = boxesBuffer
+        outputs[others[0]] = classesBuffer
+        outputs[others[1]] = scoresBuffer
+        outputs[countIndex] = countBuffer
+    }
+
+    private fun allocate(interpreter: Interpreter, index: Int): ByteBuffer {
+        return ByteBuffer.allocateDirect(interpreter.getOutputTensor(index).numBytes())
+            .order(ByteOrder.nativeOrder())
+    }
+
+    override fun detect(frameBuffers: FrameBufferPool.FrameBuffers): MutableList<Detection>? {
+        val interpreter = interpreter ?: return null
+
+        inputs[0] = prepareInput(frameBuffers.converter.outputBuffer)
+        for (buffer in outputs.values) {
+            (buffer as ByteBuffer).rewind()
+        }
+        interpreter.runForMultipleInputsOutputs(inputs, outputs)
+
+        val count = minOf(countBuffer.getFloat(0).toInt(), maxDetections)
+        val results = ArrayList<Detection>(maxResults)
+        for (i in 0 until count) {
+            val score = scoresBuffer.getFloat(i * 4)
+            if (score < threshold) {
+                continue
+            }
+            val labelIndex = classesBuffer.getFloat(i * 4).toInt()
+            val label = labels.getOrElse(labelIndex) { labelIndex.toString() }
+
+            // [ymin, xmin, ymax, xmax] 정규화 좌표 -> 모델 입력 픽셀 좌표
+            val offset = i * 16
+            val box = RectF(
+                boxesBuffer.getFloat(offset + 4) * inputWidth,
+                boxesBuffer.getFloat(offset) * inputHeight,
+                boxesBuffer.getFloat(offset + 12) * inputWidth,
+                boxesBuffer.getFloat(offset + 8) * inputHeight
+            )
+            results.add(Detection.create(box, listOf(Category(label, score))))
+            if (results.size >= maxResults) {
+                break
+            }
+        }
+        return results
+    }
+
+    /**
+     * UINT8 입력은 RGB 버퍼를 그대로, FLOAT32 입력은 (값 - mean) / std 로 정규화해서 사용
+     */
+    private fun prepareInput(rgb: ByteBuffer): ByteBuffer {
+        val floatBuffer = floatInput ?: return rgb.also { it.rewind() }
+
+        floatBuffer.rewind()
+        for (i in 0 until rgb.capacity()) {
+            floatBuffer.putFloat(((rgb.get(i).toInt() and 0xFF) - floatMean) / floatStd)
+        }
+        floatBuffer.rewind()
+        return floatBuffer
+    }
+
+    override fun close() {
+        interpreter?.close()
+        interpreter = null
+    }
+
+    companion object {
+        // 정규화 정보가 없는 float 모델의 기본값 (MobileNet 계열 [-1, 1])
+        private const val IMAGE_MEAN = 127.5f
+        private const val IMAGE_STD = 127.5f
+
+        /**
+         * 0~255 픽셀 값을 정규화 후 양자화한 값으로 바꾸는 Table 생성
+         * 정규화 / 양자화 정보가 없으면 UINT8 은 그대로, INT8 은 128 을 뺀 값을 사용
+         */
+        private fun createQuantizedLut(
+            type: DataType,
+            scale: Float,
+            zeroPoint: Int,
+            normalization: Normalization?
+        ): ByteArray {
+            val min = if (type == DataType.INT8) -128 else 0
+            val max = if (type == DataType.INT8) 127 else 255
+
+            return ByteArray(256) { pixel ->
+                val quantized = if (scale == 0f || normalization == null) {
+                    pixel + min
+                } else {
+                    Math.round((pixel - normalization.mean) / normalization.std / scale) + zeroPoint
+                }
+                quantized.coerceIn(min, max).toByte()
+            }
+        }
+    }
+}
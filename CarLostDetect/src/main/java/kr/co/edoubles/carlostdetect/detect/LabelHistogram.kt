@@ -0,0 +1,128 @@
+package kr.co.edoubles.carlostdetect.detect
+
+import org.tensorflow.lite.task.vision.detector.Detection
+import java.util.BitSet
+
+/**
+ * Label histogram
+ * 한 시점에 보이는 물체를 Label ID 별 개수로 저장하는 Multiset
+ * 좌석 / 카메라가 여러 개여도 Label 수 만큼의 int 배열만 사용하며, 비교 시 할당이 발생하지 않는다
+ *
+ * @param capacity : 초기 Label 수 (부족하면 늘어남)
+ */
+class LabelHistogram(capacity: Int = DEFAULT_CAPACITY) {
+
+    private var counts = IntArray(maxOf(capacity, 1))
+
+    // 값이 들어 있을 수 있는 ID 범위 (0 until used)
+    private var used = 0
+
+    var total = 0
+        private set
+
+    val isEmpty: Boolean
+        get() = total == 0
+
+    fun clear() {
+        counts.fill(0, 0, used)
+        used = 0
+        total = 0
+    }
+
+    fun add(id: Int, count: Int = 1) {
+        ensureCapacity(id + 1)
+        counts[id] += count
+        total += count
+        if (id >= used) {
+            used = id + 1
+        }
+    }
+
+    fun count(id: Int): Int {
+        return if (id in 0 until used) counts[id] else 0
+    }
+
+    fun contains(id: Int): Boolean {
+        return count(id) > 0
+    }
+
+    /**
+     * 탐지 결과의 Label 을 개수로 누적 (exclude 에 포함된 Label 은 제외)
+     */
+    fun addAll(results: List<Detection>, registry: LabelRegistry, exclude: BitSet? = null) {
+        for (i in results.indices) {
+            val id = registry.idOf(results[i].categories[0].label)
+            if (exclude == null || !exclude.get(id)) {
+                add(id)
+            }
+        }
+    }
+
+    /**
+     * 다른 Histogram 을 더함 (여러 카메라 / 좌석 결과 합산)
+     */
+    fun merge(other: LabelHistogram) {
+        for (id in 0 until other.used) {
+            if (other.counts[id] != 0) {
+                add(id, other.counts[id])
+            }
+        }
+    }
+
+    fun copyFrom(other: LabelHistogram) {
+        clear()
+        merge(other)
+    }
+
+    /**
+     * this = max(after - before, 0) : before 에 없던 (늘어난) 물체만 남김
+     */
+    fun setDifference(after: LabelHistogram, before: LabelHistogram) {
+        clear()
+        for (id in 0 until after.used) {
+            val diff = after.counts[id] - before.count(id)
+            if (diff > 0) {
+                add(id, diff)
+            }
+        }
+    }
+
+    /**
+     * Label 을 개수 만큼 공백으로 구분해 추가 ("cup cup phone ")
+     */
+    fun appendLabels(builder: StringBuilder, registry: LabelRegistry): StringBuilder {
+        for (id in 0 until used) {
+            repeat(counts[id]) {
+                builder.append(registry.labelOf(id)).append(' ')
+            }
+        }
+        return builder
+    }
+
+    /**
+     * 개수가 있는 Label 목록 (중복 없음, 이벤트 처리용)
+     */
+    fun labels(registry: LabelRegistry): List<String> {
+        val labels = ArrayList<String>()
+        for (id in 0 until used) {
+            if (counts[id] > 0) {
+                labels.add(registry.labelOf(id))
+            }
+        }
+        return labels
+    }
+
+    private fun ensureCapacity(size: Int) {
+        if (size > counts.size) {
+            counts = counts.copyOf(maxOf(size, counts.size * 2))
+        }
+    }
+
+    override fun toString(): String {
+        return (0 until used).filter { counts[it] != 0 }.joinToString(prefix = "{", postfix = "}") { "$it=${counts[it]}" }
+    }
+
+    companion object {
+        private const val DEFAULT_CAPACITY = 128
+    }
+}
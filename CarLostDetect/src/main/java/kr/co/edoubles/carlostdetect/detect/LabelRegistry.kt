@@ -0,0 +1,65 @@
+package kr.co.edoubles.carlostdetect.detect
+
+import java.util.BitSet
+
+/**
+ * Label registry
+ * 모델 Label 문자열을 한 번만 등록해 0부터 시작하는 int ID 로 바꾸는 Class
+ * 이후 분실물 비교 / 제외 Label 확인은 ID 기반 (Bitset, 개수 Histogram) 으로 처리한다
+ *
+ * 생성 시 등록한 Label (모델 labelmap 순서) 은 ID 가 실행마다 같고, 이후 바뀌지 않으므로 lock 없이 조회한다.
+ * 목록에 없는 Label (다른 모델로 교체한 경우 등) 만 lock 을 잡고 뒤에 이어서 등록한다.
+ *
+ * @param labels : 미리 등록할 Label 목록 (labelmap 순서 등)
+ */
+class LabelRegistry(labels: Collection<String> = emptyList()) {
+
+    private val seededIds = HashMap<String, Int>()
+    private val seededNames = ArrayList<String>()
+
+    private val extraIds = HashMap<String, Int>()
+    private val extraNames = ArrayList<String>()
+
+    init {
+        labels.forEach {
+            if (!seededIds.containsKey(it)) {
+                seededIds[it] = seededNames.size
+                seededNames.add(it)
+            }
+        }
+    }
+
+    val size: Int
+        get() = seededNames.size + synchronized(this) { extraNames.size }
+
+    /**
+     * Label 의 ID 반환 (처음 보는 Label 이면 새 ID 로 등록)
+     */
+    fun idOf(label: String): Int {
+        return seededIds[label] ?: extraIdOf(label)
+    }
+
+    @Synchronized
+    private fun extraIdOf(label: String): Int {
+        return extraIds[label] ?: (seededNames.size + extraNames.size).also {
+            extraIds[label] = it
+            extraNames.add(label)
+        }
+    }
+
+    fun labelOf(id: Int): String {
+        if (id < seededNames.size) {
+            return seededNames[id]
+        }
+        return synchronized(this) { extraNames[id - seededNames.size] }
+    }
+
+    /**
+     * Label 목록을 ID Bitset 으로 변환 (제외 Label 확인용)
+     */
+    fun toBitSet(labels: Collection<String>): BitSet {
+        val bits = BitSet()
+        labels.forEach { bits.set(idOf(it)) }
+        return bits
+    }
+}
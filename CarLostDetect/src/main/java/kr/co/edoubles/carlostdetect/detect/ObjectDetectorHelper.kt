@@ -1,85 +1,652 @@
 package kr.co.edoubles.carlostdetect.detect
 
 import android.content.Context
-import android.graphics.Bitmap
+import android.graphics.RectF
 import android.os.SystemClock
 import android.util.Log
-import org.tensorflow.lite.support.image.ImageProcessor
-import org.tensorflow.lite.support.image.TensorImage
-import org.tensorflow.lite.support.image.ops.Rot90Op
-import org.tensorflow.lite.task.vision.detector.ObjectDetector
+import kr.co.edoubles.carlostdetect.utils.DETECT_INPUT_HEIGHT
+import kr.co.edoubles.carlostdetect.utils.DETECT_INPUT_WIDTH
+import kr.co.edoubles.carlostdetect.utils.DETECT_LABEL_NAME
+import kr.co.edoubles.carlostdetect.utils.DETECT_MODEL_CANDIDATES
+import kr.co.edoubles.carlostdetect.utils.DETECT_MODEL_NAME
+import kr.co.edoubles.carlostdetect.utils.DETECT_NUM_THREADS
+import kr.co.edoubles.carlostdetect.utils.DETECT_ROIS_PER_FRAME
+import kr.co.edoubles.carlostdetect.utils.DETECT_ROI_LEARN_INTERVAL
+import kr.co.edoubles.carlostdetect.utils.DETECT_WARMUP_RUNS
+import kr.co.edoubles.carlostdetect.utils.SCENE_MAX_RESULT_AGE
+import org.tensorflow.lite.support.common.FileUtil
+import org.tensorflow.lite.support.metadata.MetadataExtractor
+import org.tensorflow.lite.support.metadata.schema.NormalizationOptions
+import org.tensorflow.lite.support.metadata.schema.ProcessUnitOptions
+import org.tensorflow.lite.task.vision.detector.Detection
+import org.webrtc.VideoFrame
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
 
-class ObjectDetectorHelper(
+class ObjectDetectorHelper @JvmOverloads constructor(
     private var threshold: Float = 0.5f,
     private var maxResults: Int = 5,
     private val context: Context,
-    private val objectDetectorListener: DetectorListener?
+    private val objectDetectorListener: DetectorListener?,
+    engineType: DetectorEngineType = DetectorEngineType.TASK_LIBRARY,
+    numThreads: Int = DETECT_NUM_THREADS
 ) {
 
-    private var objectDetector: ObjectDetector? = null
+    private var detectorEngine: DetectorEngine? = null
+
+    // 실행 중 변경 가능한 Backend 설정 (다음 detect() 에서 적용)
+    @Volatile
+    var engineType: DetectorEngineType = engineType
+        private set
+
+    @Volatile
+    var numThreads: Int = numThreads
+        private set
+
+    @Volatile
+    private var engineChanged = false
+
+    // 해상도 / 회전 / ROI / bank 별 변환 버퍼와 모델 입력 Tensor (매 프레임 재사용)
+    @Volatile
+    var frameBufferPool = createPool(DETECT_INPUT_WIDTH, DETECT_INPUT_HEIGHT, YuvToRgbConverter.IDENTITY_LUT)
+        private set
+
+    // assets 에서 memory-map 한 모델과 모델 별 Label (Backend 변경 시에도 재사용)
+    private val modelBuffers = HashMap<String, MappedByteBuffer>()
+    private val modelLabels = HashMap<String, List<String>>()
+
+    @Volatile
+    var activeModelName: String? = null
+        private set
+
+    // 모델 준비 시간 측정 값 (ms)
+    @Volatile
+    var modelLoadTimeMs = -1L
+        private set
+
+    @Volatile
+    var warmUpTimeMs = -1L
+        private set
+
+    @Volatile
+    var isReady = false
+        private set
+
+    // 모델 로드 실패 후 다시 시도할 시각과 연속 실패 횟수 (매 프레임 다시 로드하지 않도록 Backoff)
+    // 재시도 시각은 변환 Thread 에서 needsPrepare() 로 읽음
+    @Volatile
+    private var setupRetryTimeMs = 0L
+    private var setupFailures = 0
+
+    // 변환 + 추론 시간의 이동 평균 (ms)
+    @Volatile
+    var averageInferenceTimeMs = 0f
+        private set
+
+    // 탐지 영역 (비어 있으면 전체 프레임), 탐지 Thread 에서 다음 프레임부터 적용
+    @Volatile
+    var rois: List<DetectionRoi> = emptyList()
+        set(value) {
+            field = value.take(MAX_ROIS)
+            lastResult = null
+        }
+
+    // 전체 프레임 탐지 결과 위치 누적 (ROI 학습용)
+    val roiHeatmap = RoiHeatmap()
+
+    // ROI 순환 위치와 마지막 전체 프레임 학습 이후 ROI 추론 수 (변환 Thread 에서만 사용)
+    private var roiCursor = 0
+    private var roiFramesSinceLearn = 0
+
+    // ROI 별 마지막 추론 결과 (추론 Thread 에서만 사용, ROI 목록이 바뀌면 초기화)
+    private var roiResultsOwner: List<DetectionRoi>? = null
+    private var roiResults: Array<List<Detection>> = emptyArray()
+
+    // 장면 변화가 없을 때 추론을 건너뛰기 위한 설정과 상태
+    private val sceneChangeDetector = SceneChangeDetector()
+
+    // 비교 기준 초기화 요청 (변환 Thread 에서 처리)
+    @Volatile
+    private var sceneResetPending = false
+
+    @Volatile
+    var sceneGatingEnabled = true
+
+    // 이전 결과를 재사용할 수 있는 최대 시간 (초과 시 강제로 추론)
+    @Volatile
+    var maxResultAgeMs = SCENE_MAX_RESULT_AGE
+
+    // 마지막 추론 결과 (변환 Thread 에서 재사용 여부 판단에 사용)
+    private class LastResult(
+        val results: MutableList<Detection>,
+        val imageWidth: Int,
+        val imageHeight: Int,
+        val time: Long
+    )
+
+    @Volatile
+    private var lastResult: LastResult? = null
+
+    // Pipeline 없이 detect() 를 호출할 때 사용하는 작업
+    private val syncJob = DetectionJob(0)
+
+    // 변화 없음으로 추론을 건너뛴 / 실제 추론한 프레임 수
+    @Volatile
+    var gatedFrames = 0L
+        private set
+
+    @Volatile
+    var inferredFrames = 0L
+        private set
 
     /*init {
         setupObjectDetector()
     }*/
 
+    /**
+     * Prepare
+     * 모델 로드와 Warm-up 추론을 미리 수행 (탐지 Thread 에서 호출)
+     * 첫 실제 프레임이 모델 파싱 / 메모리 할당 비용을 내지 않도록 한다
+     */
+    fun prepare() {
+        if (detectorEngine == null) {
+            if (SystemClock.elapsedRealtime() < setupRetryTimeMs) {
+                return
+            }
+            setupObjectDetector()
+        }
+        val engine = detectorEngine ?: return
+
+        val startTime = SystemClock.elapsedRealtime()
+        val frameBuffers = frameBufferPool.acquire(engine.inputWidth, engine.inputHeight, 0)
+        repeat(DETECT_WARMUP_RUNS) {
+            engine.detect(frameBuffers)
+        }
+        warmUpTimeMs = SystemClock.elapsedRealtime() - startTime
+        isReady = true
+
+        Log.d(TAG, "prepare: $engineType ($activeModelName), load ${modelLoadTimeMs}ms, warm-up ${warmUpTimeMs}ms ($DETECT_WARMUP_RUNS runs)")
+    }
+
+    /**
+     * Backend 변경을 적용하고, 모델이 준비되지 않았으면 준비 (추론 Thread 에서 호출)
+     * 로드에 실패했으면 Backoff 시각이 지나기 전에는 다시 로드하지 않는다
+     */
+    fun prepareIfNeeded() {
+        applyEngineChange()
+        if (!isReady) {
+            prepare()
+        }
+    }
+
+    /**
+     * 추론 Thread 에 prepareIfNeeded() 를 요청해야 하면 true (변환 Thread 에서 호출)
+     * 적용할 Backend 변경이 있거나, 준비되지 않았고 재시도 시각이 지난 경우
+     */
+    fun needsPrepare(): Boolean {
+        return engineChanged || (!isReady && SystemClock.elapsedRealtime() >= setupRetryTimeMs)
+    }
+
     fun clearObjectDetector() {
-        objectDetector?.close()
-        objectDetector = null
+        isReady = false
+        lastResult = null
+        sceneResetPending = true
+        detectorEngine?.close()
+        detectorEngine = null
+        Log.d(TAG, "clearObjectDetector: $frameBufferPool, gated: $gatedFrames, inferred: $inferredFrames")
+        frameBufferPool.clear()
     }
 
-    private fun setupObjectDetector() {
-        val optionsBuilder =
-            ObjectDetector.ObjectDetectorOptions.builder()
-                .setScoreThreshold(threshold)
-                .setMaxResults(maxResults)
+    /**
+     * 추론 Backend 와 Thread 수를 변경 (탐지 Thread 에서 다음 프레임부터 적용)
+     */
+    fun setEngine(type: DetectorEngineType, threads: Int = numThreads) {
+        if (type == engineType && threads == numThreads) {
+            return
+        }
+        engineType = type
+        numThreads = threads
+        engineChanged = true
+        // 다른 Backend 는 이전 실패와 관계없이 바로 시도
+        setupRetryTimeMs = 0L
+        setupFailures = 0
+        Log.d(TAG, "setEngine: $type, threads: $threads")
+    }
+
+    /**
+     * 압축되지 않은 asset 을 memory-map (build.gradle 의 noCompress 설정 필요)
+     * 없는 모델이면 null
+     */
+    private fun loadModel(modelName: String): MappedByteBuffer? {
+        modelBuffers[modelName]?.let { return it }
+        return try {
+            FileUtil.loadMappedFile(context, modelName).also { modelBuffers[modelName] = it }
+        } catch (e: IOException) {
+            null
+        }
+    }
+
+    /**
+     * 현재 Backend 가 사용할 모델의 Label 목록 (Class 순서, 모델이 없으면 빈 목록)
+     * LabelRegistry 를 모델 Class 순서로 미리 등록하기 위해 추론 Thread 가 시작되기 전에 호출
+     */
+    fun loadModelLabels(): List<String> {
+        val modelName = when (engineType) {
+            DetectorEngineType.TASK_LIBRARY -> DETECT_MODEL_NAME
+            DetectorEngineType.INTERPRETER -> DETECT_MODEL_CANDIDATES.firstOrNull { loadModel(it) != null }
+        } ?: return emptyList()
+        val model = loadModel(modelName) ?: return emptyList()
+        return loadLabels(modelName, model)
+    }
+
+    /**
+     * assets 의 Label 파일을 우선 사용하고, 없으면 모델 Metadata 에 포함된 Label 파일을 읽음
+     */
+    private fun loadLabels(modelName: String, model: ByteBuffer): List<String> {
+        modelLabels[modelName]?.let { return it }
+
+        val loaded = try {
+            FileUtil.loadLabels(context, DETECT_LABEL_NAME)
+        } catch (e: IOException) {
+            loadMetadataLabels(model)
+        }
+        // SSD 계열 Label 파일의 첫 줄 배경 표시 ("???") 는 Class 번호에 포함되지 않음
+        val labels = if (loaded.firstOrNull() == BACKGROUND_LABEL) loaded.drop(1) else loaded
+        modelLabels[modelName] = labels
+        return labels
+    }
+
+    private fun loadMetadataLabels(model: ByteBuffer): List<String> {
+        return try {
+            val extractor = MetadataExtractor(model.duplicate())
+            if (!extractor.hasMetadata()) {
+                return emptyList()
+            }
+            val names = extractor.associatedFileNames
+            val labelFile = names.firstOrNull { it.contains("label", ignoreCase = true) }
+                ?: names.firstOrNull { it.endsWith(".txt") }
+                ?: return emptyList()
+            FileUtil.loadLabels(extractor.getAssociatedFile(labelFile))
+        } catch (e: Exception) {
+            // Label 이 없으면 Engine 이 Class 번호를 Label 로 사용
+            Log.e(TAG, "모델 Metadata 에서 Label 을 읽지 못함 : " + e.message)
+            emptyList()
+        }
+    }
 
-        val modelName = "model.tflite"
+    /**
+     * 모델 Metadata 의 입력 정규화 값 (NormalizationOptions) 을 읽음, 없으면 null
+     * 채널 별 값이 다르면 모든 채널에 같은 Table 을 쓰므로 평균값을 사용
+     */
+    private fun loadNormalization(model: ByteBuffer): InterpreterDetectorEngine.Normalization? {
+        return try {
+            val extractor = MetadataExtractor(model.duplicate())
+            if (!extractor.hasMetadata()) {
+                return null
+            }
+            val tensor = extractor.getInputTensorMetadata(0) ?: return null
+            for (i in 0 until tensor.processUnitsLength()) {
+                val unit = tensor.processUnits(i)
+                if (unit.optionsType() != ProcessUnitOptions.NormalizationOptions) {
+                    continue
+                }
+                val options = unit.options(NormalizationOptions()) as NormalizationOptions
+                if (options.meanLength() == 0 || options.stdLength() == 0) {
+                    return null
+                }
+                val mean = (0 until options.meanLength()).map { options.mean(it) }.average().toFloat()
+                val std = (0 until options.stdLength()).map { options.std(it) }.average().toFloat()
+                return if (std > 0f) InterpreterDetectorEngine.Normalization(mean, std) else null
+            }
+            null
+        } catch (e: Exception) {
+            Log.e(TAG, "모델 Metadata 에서 정규화 값을 읽지 못함 : " + e.message)
+            null
+        }
+    }
+
+    private fun createInterpreterEngine(modelName: String, model: ByteBuffer): InterpreterDetectorEngine {
+        return InterpreterDetectorEngine(
+            model, loadLabels(modelName, model), threshold, maxResults, numThreads,
+            normalization = loadNormalization(model)
+        )
+    }
+
+    private fun createEngine(): DetectorEngine {
+        return when (engineType) {
+            DetectorEngineType.TASK_LIBRARY -> {
+                val model = loadModel(DETECT_MODEL_NAME)
+                    ?: throw IOException("모델을 찾을 수 없음 : $DETECT_MODEL_NAME")
+                activeModelName = DETECT_MODEL_NAME
+                TaskLibraryDetectorEngine(model, threshold, maxResults, DETECT_INPUT_WIDTH, DETECT_INPUT_HEIGHT)
+            }
+
+            // 후보 중 처음 존재하는 모델 사용 (양자화 모델 우선), 입력 경로는 입력 Tensor 타입으로 결정
+            DetectorEngineType.INTERPRETER -> {
+                val modelName = DETECT_MODEL_CANDIDATES.firstOrNull { loadModel(it) != null }
+                    ?: throw IOException("모델을 찾을 수 없음 : $DETECT_MODEL_CANDIDATES")
+                activeModelName = modelName
+                createInterpreterEngine(modelName, modelBuffers.getValue(modelName))
+            }
+        }
+    }
+
+    /**
+     * Benchmark
+     * Interpreter Backend 로 후보 모델들의 평균 추론 시간을 측정 (탐지 Thread 에서 호출)
+     * 양자화 모델을 기존 float 모델과 비교하기 위해 사용
+     * @return 모델 이름 -> 평균 추론 시간 (ms)
+     */
+    @JvmOverloads
+    fun benchmarkModels(runs: Int = BENCHMARK_RUNS): Map<String, Float> {
+        val result = LinkedHashMap<String, Float>()
+
+        for (modelName in DETECT_MODEL_CANDIDATES) {
+            val model = loadModel(modelName) ?: continue
+            val engine = createInterpreterEngine(modelName, model)
+            try {
+                engine.setup()
+                val frameBuffers = FrameBufferPool.FrameBuffers(engine.inputWidth, engine.inputHeight, engine.pixelLut)
+                repeat(DETECT_WARMUP_RUNS) { engine.detect(frameBuffers) }
+
+                val startTime = SystemClock.elapsedRealtimeNanos()
+                repeat(runs) { engine.detect(frameBuffers) }
+                val average = (SystemClock.elapsedRealtimeNanos() - startTime) / 1_000_000f / runs
+
+                result[modelName] = average
+                Log.d(TAG, "benchmark: $modelName (${engine.inputType}) ${average}ms, threads: $numThreads")
+            } catch (e: Exception) {
+                Log.e(TAG, "benchmark: $modelName 실패 - " + e.message)
+            } finally {
+                engine.close()
+            }
+        }
+        return result
+    }
+
+    private fun setupObjectDetector() {
+        val startTime = SystemClock.elapsedRealtime()
+        var engine: DetectorEngine? = null
 
         try {
-            objectDetector =
-                ObjectDetector.createFromFileAndOptions(context, modelName, optionsBuilder.build())
-        } catch (e: IllegalStateException) {
+            engine = createEngine()
+            engine.setup()
+            detectorEngine = engine
+            modelLoadTimeMs = SystemClock.elapsedRealtime() - startTime
+        } catch (e: Exception) {
+            engine?.close()
+            setupFailures++
+            val backoff = minOf(SETUP_RETRY_BASE_MS shl minOf(setupFailures - 1, 10), SETUP_RETRY_MAX_MS)
+            setupRetryTimeMs = SystemClock.elapsedRealtime() + backoff
             objectDetectorListener?.onError(
                 "Object detector failed to initialize. See error logs for details"
             )
-            Log.e(TAG, "TFLite failed to load model with error: " + e.message)
+            Log.e(TAG, "TFLite failed to load model with error: " + e.message + " (retry in ${backoff}ms)")
+            return
+        }
+        setupFailures = 0
+        setupRetryTimeMs = 0L
+
+        // 모델 입력 크기 / 입력 값 변환 Table 이 바뀌면 버퍼 Pool 을 새로 구성
+        if (frameBufferPool.inputWidth != engine.inputWidth || frameBufferPool.inputHeight != engine.inputHeight ||
+            frameBufferPool.pixelLut !== engine.pixelLut
+        ) {
+            frameBufferPool.clear()
+            frameBufferPool = createPool(engine.inputWidth, engine.inputHeight, engine.pixelLut)
         }
     }
 
     /**
      * Detect
      * TensorFlow Lite를 활용하여 물체가 탐지 되는 Core 부분
-     * @param image : 탐지를 위한 이미지
+     * 변환 / 추론 / 결과 전달을 호출 Thread 에서 차례로 수행 (Pipeline 을 쓰지 않는 경우)
+     * @param buffer : 탐지를 위한 I420 버퍼 (호출 측에서 release)
+     * @param imageRotation : VideoFrame 의 회전 값
      */
-    fun detect(image: Bitmap, imageRotation: Int) {
-        if (objectDetector == null) {
-            setupObjectDetector()
+    fun detect(buffer: VideoFrame.I420Buffer, imageRotation: Int) {
+        applyEngineChange()
+        if (detectorEngine == null) {
+            prepare()
+        }
+
+        val job = syncJob
+        job.reset()
+        if (convert(job, buffer, imageRotation, 0L) && infer(job)) {
+            deliver(job)
+        }
+    }
+
+    /**
+     * 변경된 Backend 가 있으면 교체 (추론 Thread 에서 호출)
+     */
+    fun applyEngineChange() {
+        if (engineChanged) {
+            engineChanged = false
+            clearObjectDetector()
+            prepare()
+        }
+    }
+
+    /**
+     * Convert (Pipeline 1단계)
+     * 장면 변화를 확인하고, 변화가 있으면 I420 을 job 의 bank 버퍼로 변환
+     * @return 다음 단계로 넘길 작업이면 true (모델 준비 전이면 false)
+     */
+    fun convert(job: DetectionJob, buffer: VideoFrame.I420Buffer, imageRotation: Int, timestampNs: Long): Boolean {
+        if (!isReady) {
+            return false
+        }
+        job.timestampNs = timestampNs
+        job.startTime = SystemClock.uptimeMillis()
+
+        if (sceneResetPending) {
+            sceneResetPending = false
+            sceneChangeDetector.reset()
+        }
+
+        // 장면 변화가 없으면 최대 재사용 시간까지 이전 결과를 그대로 전달
+        val changed = sceneChangeDetector.hasChanged(buffer)
+        val last = lastResult
+        if (sceneGatingEnabled && !changed && last != null &&
+            SystemClock.elapsedRealtime() - last.time < maxResultAgeMs
+        ) {
+            gatedFrames++
+            job.reused = true
+            job.results = last.results
+            job.imageWidth = last.imageWidth
+            job.imageHeight = last.imageHeight
+            return true
+        }
+        if (!changed) {
+            // 강제 갱신한 프레임을 새 비교 기준으로 사용
+            sceneChangeDetector.acceptCurrent(buffer)
+        }
+
+        val pool = frameBufferPool
+        val activeRois = rois
+        job.pool = pool
+        job.rois = activeRois
+
+        // ROI 를 쓰는 중에도 가끔 전체 프레임으로 추론해 Heatmap 이 새 위치를 계속 학습하도록 함
+        val learning = activeRois.isNotEmpty() && ++roiFramesSinceLearn >= DETECT_ROI_LEARN_INTERVAL
+        if (learning) {
+            roiFramesSinceLearn = 0
+        }
+
+        if (activeRois.isEmpty() || learning) {
+            // I420 Plane 을 회전 / Letterbox 된 RGB 입력으로 바로 변환
+            val frameBuffers = pool.acquire(buffer.width, buffer.height, imageRotation, 0, job.bank)
+            frameBuffers.converter.convert(buffer, imageRotation)
+            job.frameBuffers.add(frameBuffers)
+            job.learning = learning
+        } else {
+            // 프레임 당 DETECT_ROIS_PER_FRAME 개의 ROI 만 잘라서 변환하고 나머지는 다음 프레임에 차례로 변환
+            val count = minOf(DETECT_ROIS_PER_FRAME, activeRois.size)
+            val start = roiCursor % activeRois.size
+            roiCursor = (start + count) % activeRois.size
+            job.roiStart = start
+            for (k in 0 until count) {
+                val index = (start + k) % activeRois.size
+                val frameBuffers = pool.acquire(buffer.width, buffer.height, imageRotation, index + 1, job.bank)
+                frameBuffers.converter.convert(buffer, imageRotation, activeRois[index].bounds)
+                job.frameBuffers.add(frameBuffers)
+            }
+        }
+        return true
+    }
+
+    /**
+     * Infer (Pipeline 2단계)
+     * 변환된 입력으로 추론하고 Box 를 원본 (회전 적용) 좌표로 변환
+     * @return 결과를 전달할 작업이면 true (변환 이후 Backend 가 바뀐 작업이면 false)
+     */
+    fun infer(job: DetectionJob): Boolean {
+        if (job.reused) {
+            return true
+        }
+        val engine = detectorEngine
+        if (engine == null || job.pool !== frameBufferPool) {
+            return false
         }
-        var inferenceTime = SystemClock.uptimeMillis()
+        inferredFrames++
 
-        // 이미지 각도 조정
-        val imageProcessor =
-            ImageProcessor.Builder()
-                .add(Rot90Op(-imageRotation / 90))
-                .build()
+        val results: MutableList<Detection>?
+        val firstConverter = job.frameBuffers[0].converter
+
+        if (job.rois.isEmpty() || job.learning) {
+            // 물체 탐지 후 Box 를 원본 (회전 적용) 좌표로 변환 (결과 객체의 Box 를 직접 수정)
+            val detected = engine.detect(job.frameBuffers[0])
+            detected?.forEach { detection ->
+                firstConverter.mapToUpright(detection.boundingBox)
+            }
+            detected?.let { roiHeatmap.accumulate(it, firstConverter.uprightWidth, firstConverter.uprightHeight) }
+
+            // 학습용 전체 프레임도 결과는 ROI 안의 물체만 전달
+            results = if (job.learning && detected != null) {
+                detected.filterTo(ArrayList()) { detection ->
+                    val box = detection.boundingBox
+                    val x = box.centerX() / firstConverter.uprightWidth
+                    val y = box.centerY() / firstConverter.uprightHeight
+                    job.rois.any { it.contains(x, y) }
+                }
+            } else {
+                detected
+            }
+        } else {
+            if (roiResultsOwner !== job.rois) {
+                roiResultsOwner = job.rois
+                roiResults = Array(job.rois.size) { emptyList() }
+            }
+
+            // 이번 프레임에서 변환한 ROI 만 추론해 해당 ROI 의 결과를 교체
+            for (k in job.frameBuffers.indices) {
+                val index = (job.roiStart + k) % job.rois.size
+                val roi = job.rois[index]
+                val frameBuffers = job.frameBuffers[k]
+                val converter = frameBuffers.converter
+
+                val roiDetections = ArrayList<Detection>()
+                engine.detect(frameBuffers)?.forEach { detection ->
+                    val box = converter.mapToUpright(detection.boundingBox)
+                    // Box 중심이 다각형 안에 있는 결과만 사용
+                    if (roi.contains(box.centerX() / converter.uprightWidth, box.centerY() / converter.uprightHeight)) {
+                        roiDetections.add(detection)
+                    }
+                }
+                roiResults[index] = roiDetections
+            }
+
+            // 모든 ROI 의 마지막 결과를 전체 프레임 좌표로 합침
+            val merged = ArrayList<Detection>()
+            for (roiDetections in roiResults) {
+                merged.addAll(roiDetections)
+            }
+            results = suppressDuplicates(merged)
+        }
+
+        job.results = results
+        job.imageWidth = firstConverter.uprightWidth
+        job.imageHeight = firstConverter.uprightHeight
+        job.inferenceTime = SystemClock.uptimeMillis() - job.startTime
+        averageInferenceTimeMs = if (averageInferenceTimeMs == 0f) {
+            job.inferenceTime.toFloat()
+        } else {
+            averageInferenceTimeMs * 0.9f + job.inferenceTime * 0.1f
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "detect: $results")
+        }
 
-        // Bitmap으로 변환 후 ImageProcessor로 처리
-        val tensorImage = imageProcessor.process(TensorImage.fromBitmap(image))
+        lastResult = results?.let {
+            LastResult(it, job.imageWidth, job.imageHeight, SystemClock.elapsedRealtime())
+        }
+        return true
+    }
 
-        // 물체 탐지
-        val results = objectDetector?.detect(tensorImage)
-        inferenceTime = SystemClock.uptimeMillis() - inferenceTime
-        Log.d(TAG, "detect: $results" )
-        // Callback\
+    /**
+     * Deliver (Pipeline 3단계)
+     * 결과를 Listener 에 전달
+     */
+    fun deliver(job: DetectionJob) {
+        // Callback
         objectDetectorListener?.onResults(
-            results,
-            inferenceTime,
-            tensorImage.height,
-            tensorImage.width
+            job.results,
+            job.inferenceTime,
+            job.imageHeight,
+            job.imageWidth,
+            job.timestampNs
         )
     }
 
+    private fun createPool(width: Int, height: Int, pixelLut: ByteArray): FrameBufferPool {
+        // 전체 프레임 + ROI 수 만큼의 slot 을 bank 수 만큼 유지
+        return FrameBufferPool(width, height, pixelLut, (MAX_ROIS + 1) * FrameBufferPool.BANKS)
+    }
+
+    /**
+     * 겹치는 ROI 에서 같은 물체가 중복 탐지된 경우 점수가 높은 결과만 남김
+     */
+    private fun suppressDuplicates(detections: MutableList<Detection>): MutableList<Detection> {
+        if (detections.size < 2) {
+            return detections
+        }
+        detections.sortByDescending { it.categories[0].score }
+
+        val kept = ArrayList<Detection>(detections.size)
+        for (detection in detections) {
+            val duplicated = kept.any {
+                it.categories[0].label == detection.categories[0].label &&
+                        iou(it.boundingBox, detection.boundingBox) > DUPLICATE_IOU
+            }
+            if (!duplicated && kept.size < maxResults) {
+                kept.add(detection)
+            }
+        }
+        return kept
+    }
+
+    private fun iou(a: RectF, b: RectF): Float {
+        val width = minOf(a.right, b.right) - maxOf(a.left, b.left)
+        val height = minOf(a.bottom, b.bottom) - maxOf(a.top, b.top)
+        if (width <= 0f || height <= 0f) {
+            return 0f
+        }
+        val intersection = width * height
+        return intersection / (a.width() * a.height() + b.width() * b.height() - intersection)
+    }
+
     companion object {
         private const val TAG = "ObjectDetectorHelper"
+        private const val BENCHMARK_RUNS = 20
+        private const val BACKGROUND_LABEL = "???"
+        private const val DUPLICATE_IOU = 0.5f
+
+        // 모델 로드 실패 시 재시도 간격 (실패할 때마다 두 배, 최대값까지)
+        private const val SETUP_RETRY_BASE_MS = 1_000L
+        private const val SETUP_RETRY_MAX_MS = 60_000L
+
+        // FrameBufferPool slot 0 은 전체 프레임, 1~15 는 ROI
+        private const val MAX_ROIS = 15
     }
-}
\ No newline at end of file
+}
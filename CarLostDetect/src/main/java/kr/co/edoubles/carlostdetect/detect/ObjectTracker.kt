@@ -0,0 +1,288 @@
+package kr.co.edoubles.carlostdetect.detect
+
+import android.graphics.RectF
+import kr.co.edoubles.carlostdetect.utils.TRACK_CONFIRM_HITS
+import kr.co.edoubles.carlostdetect.utils.TRACK_IOU_THRESHOLD
+import kr.co.edoubles.carlostdetect.utils.TRACK_MAX_PREDICT_MS
+import kr.co.edoubles.carlostdetect.utils.TRACK_RETIRE_MISSES
+import org.tensorflow.lite.support.label.Category
+import org.tensorflow.lite.task.vision.detector.Detection
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Object tracker
+ * 추론 결과 사이에서 물체의 ID 를 유지하는 가벼운 IoU 기반 추적기
+ * - 같은 Label 끼리 예측 Box 와 IoU 가 큰 순서로 짝지음
+ * - Box 중심 / 크기를 등속 모델 (alpha-beta filter) 로 보정해 추론이 없는 프레임의 Box 를 예측
+ * - 연속으로 탐지되어야 확정하고, 여러 번 놓쳐야 제거 (Hysteresis) 하므로 한 번의 누락으로 상태가 바뀌지 않는다
+ *
+ * update() 는 후처리 Thread 에서, predict() 는 화면 Thread 에서 호출된다
+ */
+class ObjectTracker @JvmOverloads constructor(
+    private val iouThreshold: Float = TRACK_IOU_THRESHOLD,
+    private val confirmHits: Int = TRACK_CONFIRM_HITS,
+    private val retireMisses: Int = TRACK_RETIRE_MISSES,
+    private val maxPredictMs: Long = TRACK_MAX_PREDICT_MS
+) {
+
+    /**
+     * 추적 중인 물체 하나
+     * 상태는 Box 중심 / 크기와 ms 당 변화량
+     */
+    class Track(val id: Int, val label: String) {
+        var cx = 0f
+        var cy = 0f
+        var w = 0f
+        var h = 0f
+        var vx = 0f
+        var vy = 0f
+        var vw = 0f
+        var vh = 0f
+        var timeMs = 0L
+
+        var score = 0f
+            private set
+        var hits = 0
+            private set
+        var misses = 0
+            private set
+        var confirmed = false
+            private set
+
+        // update 중 사용하는 예측 Box
+        internal val predicted = RectF()
+
+        // 화면 표시용 결과 (predict 에서 Box 를 직접 갱신)
+        internal var output: Detection = Detection.create(RectF(), listOf(Category(label, 0f)))
+
+        internal fun predictInto(box: RectF, now: Long, maxPredictMs: Long) {
+            val dt = min(max(now - timeMs, 0L), maxPredictMs).toFloat()
+            val pw = max(w + vw * dt, 1f)
+            val ph = max(h + vh * dt, 1f)
+            val px = cx + vx * dt
+            val py = cy + vy * dt
+            box.set(px - pw / 2, py - ph / 2, px + pw / 2, py + ph / 2)
+        }
+
+        internal fun init(box: RectF, score: Float, now: Long) {
+            cx = box.centerX()
+            cy = box.centerY()
+            w = box.width()
+            h = box.height()
+            timeMs = now
+            hit(score)
+        }
+
+        internal fun correct(box: RectF, score: Float, now: Long) {
+            val dt = max(now - timeMs, 1L).toFloat()
+
+            // 예측 값과 측정 값의 차이로 위치 / 속도 보정
+            val rx = box.centerX() - predicted.centerX()
+            val ry = box.centerY() - predicted.centerY()
+            val rw = box.width() - predicted.width()
+            val rh = box.height() - predicted.height()
+
+            cx = predicted.centerX() + ALPHA * rx
+            cy = predicted.centerY() + ALPHA * ry
+            w = predicted.width() + ALPHA * rw
+            h = predicted.height() + ALPHA * rh
+            vx += BETA * rx / dt
+            vy += BETA * ry / dt
+            vw += BETA * rw / dt
+            vh += BETA * rh / dt
+            timeMs = now
+            hit(score)
+        }
+
+        internal fun miss() {
+            misses++
+            // 놓친 동안에는 움직임을 줄여 Box 가 멀리 벗어나지 않도록 함
+            vx *= VELOCITY_DECAY
+            vy *= VELOCITY_DECAY
+            vw = 0f
+            vh = 0f
+        }
+
+        private fun hit(newScore: Float) {
+            hits++
+            misses = 0
+            if (newScore != score) {
+                score = newScore
+                output = Detection.create(RectF(), listOf(Category(label, newScore)))
+            }
+        }
+
+        internal fun confirmIf(confirmHits: Int) {
+            if (hits >= confirmHits) {
+                confirmed = true
+            }
+        }
+    }
+
+    private val tracks = ArrayList<Track>()
+    private var nextId = 0
+
+    // 짝짓기 용 재사용 버퍼
+    private var trackMatched = BooleanArray(16)
+    private var detectionMatched = BooleanArray(16)
+
+    // 마지막 update 의 탐지 결과 순서대로 연결된 Track ID
+    private var detectionIds = IntArray(16)
+    private var lastDetectionCount = 0
+
+    /**
+     * 새 추론 결과로 추적 상태 갱신
+     * @param results : 원본 (회전 적용) 좌표의 탐지 결과
+     * @param now : 결과 시각 (SystemClock.uptimeMillis 기준)
+     */
+    @Synchronized
+    fun update(results: List<Detection>?, now: Long) {
+        val detections = results ?: emptyList()
+        ensureCapacity(tracks.size, detections.size)
+        trackMatched.fill(false, 0, tracks.size)
+        detectionMatched.fill(false, 0, detections.size)
+
+        for (i in tracks.indices) {
+            tracks[i].predictInto(tracks[i].predicted, now, maxPredictMs)
+        }
+
+        // IoU 가 큰 짝부터 차례로 연결 (Greedy)
+        while (true) {
+            var bestIou = iouThreshold
+            var bestTrack = -1
+            var bestDetection = -1
+            for (t in tracks.indices) {
+                if (trackMatched[t]) continue
+                val track = tracks[t]
+                for (d in detections.indices) {
+                    if (detectionMatched[d]) continue
+                    val category = detections[d].categories[0]
+                    if (category.label != track.label) continue
+                    val iou = iou(track.predicted, detections[d].boundingBox)
+                    if (iou > bestIou) {
+                        bestIou = iou
+                        bestTrack = t
+                        bestDetection = d
+                    }
+                }
+            }
+            if (bestTrack < 0) break
+
+            trackMatched[bestTrack] = true
+            detectionMatched[bestDetection] = true
+            detectionIds[bestDetection] = tracks[bestTrack].id
+            val detection = detections[bestDetection]
+            tracks[bestTrack].correct(detection.boundingBox, detection.categories[0].score, now)
+        }
+
+        // 놓친 Track 처리 (미확정 Track 은 한 번만 놓쳐도 제거)
+        for (t in tracks.size - 1 downTo 0) {
+            val track = tracks[t]
+            if (trackMatched[t]) {
+                track.confirmIf(confirmHits)
+                continue
+            }
+            track.miss()
+            if (!track.confirmed || track.misses >= retireMisses) {
+                tracks.removeAt(t)
+            }
+        }
+
+        // 짝이 없는 탐지 결과는 새 Track 으로 시작
+        for (d in detections.indices) {
+            if (detectionMatched[d]) continue
+            val detection = detections[d]
+            val category = detection.categories[0]
+            detectionIds[d] = nextId
+            tracks.add(Track(nextId++, category.label).also {
+                it.init(detection.boundingBox, category.score, now)
+                it.confirmIf(confirmHits)
+            })
+        }
+        lastDetectionCount = detections.size
+    }
+
+    /**
+     * 마지막 update() 에 전달된 탐지 결과 순서대로 연결된 Track ID 를 out 에 복사
+     * @return 복사한 개수
+     */
+    @Synchronized
+    fun copyTrackIds(out: IntArray): Int {
+        val count = min(lastDetectionCount, out.size)
+        System.arraycopy(detectionIds, 0, out, 0, count)
+        return count
+    }
+
+    /**
+     * 확정된 Track 의 현재 시각 Box 를 예측해 out 에 담음 (화면 표시용)
+     * @return 움직이는 Track 이 있으면 true (계속 다시 그릴 필요가 있음)
+     */
+    @Synchronized
+    fun predict(now: Long, out: MutableList<Detection>): Boolean {
+        out.clear()
+        var moving = false
+        for (i in tracks.indices) {
+            val track = tracks[i]
+            if (!track.confirmed) continue
+            track.predictInto(track.output.boundingBox, now, maxPredictMs)
+            out.add(track.output)
+            if (now - track.timeMs < maxPredictMs && (track.vx != 0f || track.vy != 0f)) {
+                moving = true
+            }
+        }
+        return moving
+    }
+
+    /**
+     * 확정된 Track 을 Label 별 개수로 누적 (분실물 비교용)
+     */
+    @Synchronized
+    fun appendConfirmed(histogram: LabelHistogram, registry: LabelRegistry) {
+        for (i in tracks.indices) {
+            if (tracks[i].confirmed) {
+                histogram.add(registry.idOf(tracks[i].label))
+            }
+        }
+    }
+
+    @Synchronized
+    fun confirmedCount(): Int {
+        return tracks.count { it.confirmed }
+    }
+
+    @Synchronized
+    fun clear() {
+        tracks.clear()
+        lastDetectionCount = 0
+    }
+
+    private fun ensureCapacity(trackCount: Int, detectionCount: Int) {
+        if (trackMatched.size < trackCount) {
+            trackMatched = BooleanArray(trackCount * 2)
+        }
+        if (detectionMatched.size < detectionCount) {
+            detectionMatched = BooleanArray(detectionCount * 2)
+            detectionIds = IntArray(detectionCount * 2)
+        }
+    }
+
+    private fun iou(a: RectF, b: RectF): Float {
+        val left = max(a.left, b.left)
+        val top = max(a.top, b.top)
+        val right = min(a.right, b.right)
+        val bottom = min(a.bottom, b.bottom)
+        if (right <= left || bottom <= top) {
+            return 0f
+        }
+        val intersection = (right - left) * (bottom - top)
+        return intersection / (a.width() * a.height() + b.width() * b.height() - intersection)
+    }
+
+    companion object {
+        // alpha-beta filter 계수 (위치 / 속도 보정 비율)
+        private const val ALPHA = 0.6f
+        private const val BETA = 0.2f
+        private const val VELOCITY_DECAY = 0.5f
+    }
+}
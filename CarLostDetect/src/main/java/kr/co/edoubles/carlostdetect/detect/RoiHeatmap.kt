@@ -0,0 +1,126 @@
+package kr.co.edoubles.carlostdetect.detect
+
+import android.graphics.RectF
+import org.tensorflow.lite.task.vision.detector.Detection
+
+/**
+ * Roi heatmap
+ * 과거 탐지 위치를 격자에 누적해, 물건이 자주 발견된 영역을 ROI 로 만들어 주는 Class
+ *
+ * @param columns : 가로 격자 수
+ * @param rows : 세로 격자 수
+ */
+class RoiHeatmap(
+    private val columns: Int = DEFAULT_COLUMNS,
+    private val rows: Int = DEFAULT_ROWS
+) {
+
+    private val cells = FloatArray(columns * rows)
+
+    @Volatile
+    var sampleCount = 0
+        private set
+
+    /**
+     * 탐지 결과의 Box 영역을 점수만큼 누적
+     * @param imageWidth, imageHeight : 결과 좌표 기준 이미지 크기 (회전 적용)
+     */
+    @Synchronized
+    fun accumulate(results: List<Detection>, imageWidth: Int, imageHeight: Int) {
+        if (imageWidth <= 0 || imageHeight <= 0) {
+            return
+        }
+        for (detection in results) {
+            val box = detection.boundingBox
+            val score = detection.categories.firstOrNull()?.score ?: continue
+            val left = cellX(box.left / imageWidth)
+            val right = cellX(box.right / imageWidth)
+            val top = cellY(box.top / imageHeight)
+            val bottom = cellY(box.bottom / imageHeight)
+            for (y in top..bottom) {
+                for (x in left..right) {
+                    cells[y * columns + x] += score
+                }
+            }
+        }
+        sampleCount++
+    }
+
+    /**
+     * 최대값 대비 ratio 이상인 격자를 이웃끼리 묶어 사각형 ROI 로 변환
+     * @param ratio : 최대값 대비 임계 비율
+     * @param margin : 영역 주변으로 넓힐 격자 수
+     */
+    @Synchronized
+    fun learnRois(ratio: Float = DEFAULT_RATIO, margin: Int = 1): List<DetectionRoi> {
+        val max = cells.maxOrNull() ?: 0f
+        if (max <= 0f) {
+            return emptyList()
+        }
+
+        val threshold = max * ratio
+        val visited = BooleanArray(cells.size)
+        val stack = ArrayDeque<Int>()
+        val rois = ArrayList<DetectionRoi>()
+
+        for (start in cells.indices) {
+            if (visited[start] || cells[start] < threshold) {
+                continue
+            }
+
+            // 4방향 이웃으로 연결된 격자 묶음의 범위를 구함
+            var minX = columns
+            var minY = rows
+            var maxX = -1
+            var maxY = -1
+            visited[start] = true
+            stack.addLast(start)
+            while (stack.isNotEmpty()) {
+                val index = stack.removeLast()
+                val x = index % columns
+                val y = index / columns
+                minX = minOf(minX, x)
+                minY = minOf(minY, y)
+                maxX = maxOf(maxX, x)
+                maxY = maxOf(maxY, y)
+
+                if (x > 0) visit(index - 1, threshold, visited, stack)
+                if (x < columns - 1) visit(index + 1, threshold, visited, stack)
+                if (y > 0) visit(index - columns, threshold, visited, stack)
+                if (y < rows - 1) visit(index + columns, threshold, visited, stack)
+            }
+
+            val rect = RectF(
+                (minX - margin).coerceAtLeast(0).toFloat() / columns,
+                (minY - margin).coerceAtLeast(0).toFloat() / rows,
+                (maxX + 1 + margin).coerceAtMost(columns).toFloat() / columns,
+                (maxY + 1 + margin).coerceAtMost(rows).toFloat() / rows
+            )
+            rois.add(DetectionRoi.fromRect("heatmap_${rois.size}", rect))
+        }
+        return rois
+    }
+
+    @Synchronized
+    fun clear() {
+        cells.fill(0f)
+        sampleCount = 0
+    }
+
+    private fun visit(index: Int, threshold: Float, visited: BooleanArray, stack: ArrayDeque<Int>) {
+        if (!visited[index] && cells[index] >= threshold) {
+            visited[index] = true
+            stack.addLast(index)
+        }
+    }
+
+    private fun cellX(value: Float): Int = (value * columns).toInt().coerceIn(0, columns - 1)
+
+    private fun cellY(value: Float): Int = (value * rows).toInt().coerceIn(0, rows - 1)
+
+    companion object {
+        private const val DEFAULT_COLUMNS = 16
+        private const val DEFAULT_ROWS = 12
+        private const val DEFAULT_RATIO = 0.2f
+    }
+}
@@ -0,0 +1,111 @@
+package kr.co.edoubles.carlostdetect.detect
+
+import org.webrtc.VideoFrame
+import kotlin.math.abs
+
+/**
+ * Scene change detector
+ * 축소한 Y Plane 의 Block 평균 밝기를 비교해 차량 내부에 변화가 있는지 판단하는 Class
+ * 변화가 없으면 추론을 건너뛰고 이전 결과를 재사용하기 위해 사용한다 (프레임 당 할당 없음)
+ *
+ * @param blockColumns, blockRows : 비교할 Block 격자 크기
+ * @param blockThreshold : Block 평균 밝기 차이가 이 값 이상이면 변한 Block
+ * @param changedRatio : 변한 Block 비율이 이 값 이상이면 장면이 바뀐 것으로 판단
+ */
+class SceneChangeDetector(
+    private val blockColumns: Int = DEFAULT_BLOCK_COLUMNS,
+    private val blockRows: Int = DEFAULT_BLOCK_ROWS,
+    private val blockThreshold: Int = DEFAULT_BLOCK_THRESHOLD,
+    private val changedRatio: Float = DEFAULT_CHANGED_RATIO
+) {
+
+    // 마지막으로 추론한 프레임의 Block 평균 (기준 값)
+    private val reference = IntArray(blockColumns * blockRows)
+    private val current = IntArray(blockColumns * blockRows)
+    private var hasReference = false
+    private var referenceWidth = 0
+    private var referenceHeight = 0
+
+    /**
+     * 기준 프레임 대비 장면이 바뀌었는지 확인
+     * 바뀐 경우 (또는 기준이 없는 경우) 현재 프레임이 새 기준이 된다
+     */
+    fun hasChanged(buffer: VideoFrame.I420Buffer): Boolean {
+        computeBlocks(buffer)
+
+        if (!hasReference || buffer.width != referenceWidth || buffer.height != referenceHeight) {
+            updateReference(buffer)
+            return true
+        }
+
+        var changedBlocks = 0
+        for (i in current.indices) {
+            if (abs(current[i] - reference[i]) >= blockThreshold) {
+                changedBlocks++
+            }
+        }
+
+        val changed = changedBlocks >= current.size * changedRatio
+        if (changed) {
+            updateReference(buffer)
+        }
+        return changed
+    }
+
+    /**
+     * 현재 프레임을 강제로 기준으로 사용 (최대 재사용 시간 초과로 추론한 경우)
+     */
+    fun acceptCurrent(buffer: VideoFrame.I420Buffer) {
+        updateReference(buffer)
+    }
+
+    fun reset() {
+        hasReference = false
+    }
+
+    private fun updateReference(buffer: VideoFrame.I420Buffer) {
+        System.arraycopy(current, 0, reference, 0, current.size)
+        referenceWidth = buffer.width
+        referenceHeight = buffer.height
+        hasReference = true
+    }
+
+    /**
+     * 각 Block 안에서 SAMPLE_STEP 간격으로 추출한 Y 값의 평균 (축소된 Y Plane)
+     */
+    private fun computeBlocks(buffer: VideoFrame.I420Buffer) {
+        val dataY = buffer.dataY
+        val stride = buffer.strideY
+        val blockWidth = maxOf(buffer.width / blockColumns, 1)
+        val blockHeight = maxOf(buffer.height / blockRows, 1)
+
+        for (by in 0 until blockRows) {
+            val startY = by * blockHeight
+            for (bx in 0 until blockColumns) {
+                val startX = bx * blockWidth
+                var sum = 0
+                var count = 0
+                var y = startY
+                while (y < startY + blockHeight && y < buffer.height) {
+                    val row = y * stride
+                    var x = startX
+                    while (x < startX + blockWidth && x < buffer.width) {
+                        sum += dataY.get(row + x).toInt() and 0xFF
+                        count++
+                        x += SAMPLE_STEP
+                    }
+                    y += SAMPLE_STEP
+                }
+                current[by * blockColumns + bx] = if (count == 0) 0 else sum / count
+            }
+        }
+    }
+
+    companion object {
+        private const val DEFAULT_BLOCK_COLUMNS = 16
+        private const val DEFAULT_BLOCK_ROWS = 12
+        private const val DEFAULT_BLOCK_THRESHOLD = 12
+        private const val DEFAULT_CHANGED_RATIO = 0.02f
+        private const val SAMPLE_STEP = 4
+    }
+}
@@ -0,0 +1,41 @@
+package kr.co.edoubles.carlostdetect.detect
+
+import org.tensorflow.lite.task.vision.detector.Detection
+import org.tensorflow.lite.task.vision.detector.ObjectDetector
+import java.nio.ByteBuffer
+
+/**
+ * Task library detector engine
+ * 기존 TFLite Task Library ObjectDetector 를 사용하는 Backend
+ */
+class TaskLibraryDetectorEngine(
+    private val model: ByteBuffer,
+    private val threshold: Float,
+    private val maxResults: Int,
+    override val inputWidth: Int,
+    override val inputHeight: Int
+) : DetectorEngine {
+
+    private var objectDetector: ObjectDetector? = null
+
+    override fun setup() {
+        val optionsBuilder =
+            ObjectDetector.ObjectDetectorOptions.builder()
+                .setScoreThreshold(threshold)
+                .setMaxResults(maxResults)
+
+        objectDetector =
+            ObjectDetector.createFromBufferAndOptions(model, optionsBuilder.build())
+    }
+
+    override fun detect(frameBuffers: FrameBufferPool.FrameBuffers): MutableList<Detection>? {
+        frameBuffers.inputBuffer.loadBuffer(frameBuffers.converter.outputBuffer)
+        frameBuffers.tensorImage.load(frameBuffers.inputBuffer)
+        return objectDetector?.detect(frameBuffers.tensorImage)
+    }
+
+    override fun close() {
+        objectDetector?.close()
+        objectDetector = null
+    }
+}
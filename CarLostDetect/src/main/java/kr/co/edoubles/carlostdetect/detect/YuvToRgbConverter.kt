@@ -0,0 +1,231 @@
+package kr.co.edoubles.carlostdetect.detect
+
+import android.graphics.RectF
+import org.webrtc.VideoFrame
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import kotlin.math.min
+import kotlin.math.roundToInt
+
+/**
+ * Yuv to rgb converter
+ * I420 Plane 을 JPEG 변환 없이 모델 입력용 RGB 버퍼에 바로 쓰는 Class
+ * Stride 를 고려하며, 회전 / ROI 자르기 / 축소 / Letterbox 를 한 번의 순회로 처리한다
+ *
+ * @param targetWidth : 모델 입력 가로 크기
+ * @param targetHeight : 모델 입력 세로 크기
+ * @param pixelLut : 0~255 RGB 값을 모델 입력 값으로 바꾸는 Table (양자화 모델용, 기본은 그대로 사용)
+ */
+class YuvToRgbConverter(
+    val targetWidth: Int,
+    val targetHeight: Int,
+    val pixelLut: ByteArray = IDENTITY_LUT
+) {
+
+    // 모델 입력용 RGB888 버퍼 (매 프레임 재사용)
+    val outputBuffer: ByteBuffer =
+        ByteBuffer.allocateDirect(targetWidth * targetHeight * CHANNELS).order(ByteOrder.nativeOrder())
+
+    // 마지막 변환 기준 Letterbox 정보
+    var scale = 1f
+        private set
+    var padX = 0
+        private set
+    var padY = 0
+        private set
+
+    // 회전이 적용된 원본 이미지 크기
+    var uprightWidth = 0
+        private set
+    var uprightHeight = 0
+        private set
+
+    // 회전된 원본 기준 자르기 영역 (ROI 가 없으면 전체)
+    private var cropX = 0
+    private var cropY = 0
+    private var cropWidth = 0
+    private var cropHeight = 0
+
+    private var contentWidth = 0
+    private var contentHeight = 0
+
+    // Lookup Table 이 만들어진 조건 (크기, 회전, Stride)
+    private var srcWidth = -1
+    private var srcHeight = -1
+    private var srcRotation = -1
+    private var srcStrideY = -1
+    private var srcStrideU = -1
+    private var srcStrideV = -1
+
+    // 출력 좌표 -> Plane Index 변환 테이블 (행 / 열 성분으로 분리)
+    private val yRow = IntArray(targetHeight)
+    private val uRow = IntArray(targetHeight)
+    private val vRow = IntArray(targetHeight)
+    private val yCol = IntArray(targetWidth)
+    private val uCol = IntArray(targetWidth)
+    private val vCol = IntArray(targetWidth)
+
+    /**
+     * Convert
+     * I420 버퍼를 회전 후 Letterbox 된 RGB 로 변환
+     * @param buffer : 변환할 I420 버퍼
+     * @param rotation : VideoFrame 의 회전 값 (시계 방향, 0/90/180/270)
+     * @param crop : 회전된 이미지 기준 정규화 (0~1) 자르기 영역, null 이면 전체
+     * @return 모델 입력 크기의 RGB888 버퍼
+     */
+    @JvmOverloads
+    fun convert(buffer: VideoFrame.I420Buffer, rotation: Int, crop: RectF? = null): ByteBuffer {
+        prepare(buffer, rotation, crop)
+
+        val dataY = buffer.dataY
+        val dataU = buffer.dataU
+        val dataV = buffer.dataV
+        val out = outputBuffer
+        val lut = pixelLut
+
+        for (oy in 0 until contentHeight) {
+            val yr = yRow[oy]
+            val ur = uRow[oy]
+            val vr = vRow[oy]
+            var index = ((oy + padY) * targetWidth + padX) * CHANNELS
+
+            for (ox in 0 until contentWidth) {
+                val y = dataY.get(yr + yCol[ox]).toInt() and 0xFF
+                val u = (dataU.get(ur + uCol[ox]).toInt() and 0xFF) - 128
+                val v = (dataV.get(vr + vCol[ox]).toInt() and 0xFF) - 128
+
+                // BT.601 Full Range (카메라 출력 기준), 10bit 고정소수점
+                out.put(index, lut[clamp(y + ((1436 * v) shr 10))])
+                out.put(index + 1, lut[clamp(y - ((352 * u + 731 * v) shr 10))])
+                out.put(index + 2, lut[clamp(y + ((1815 * u) shr 10))])
+                index += CHANNELS
+            }
+        }
+
+        out.rewind()
+        return out
+    }
+
+    /**
+     * 모델 입력 좌표의 Box 를 회전된 원본 이미지 좌표로 되돌리는 함수 (Box 를 직접 수정)
+     */
+    fun mapToUpright(box: RectF): RectF {
+        box.set(
+            (cropX + (box.left - padX) / scale).coerceIn(0f, uprightWidth.toFloat()),
+            (cropY + (box.top - padY) / scale).coerceIn(0f, uprightHeight.toFloat()),
+            (cropX + (box.right - padX) / scale).coerceIn(0f, uprightWidth.toFloat()),
+            (cropY + (box.bottom - padY) / scale).coerceIn(0f, uprightHeight.toFloat())
+        )
+        return box
+    }
+
+    /**
+     * 입력 조건이 바뀐 경우에만 Letterbox 정보와 Lookup Table 을 다시 계산
+     */
+    private fun prepare(buffer: VideoFrame.I420Buffer, rotation: Int, crop: RectF?) {
+        val width = buffer.width
+        val height = buffer.height
+        val normalized = ((rotation % 360) + 360) % 360
+        val transposed = normalized == 90 || normalized == 270
+        val fullWidth = if (transposed) height else width
+        val fullHeight = if (transposed) width else height
+
+        // 정규화 영역 -> 픽셀 영역 (최소 2픽셀)
+        val newCropX = if (crop == null) 0 else (crop.left * fullWidth).toInt().coerceIn(0, fullWidth - 2)
+        val newCropY = if (crop == null) 0 else (crop.top * fullHeight).toInt().coerceIn(0, fullHeight - 2)
+        val newCropWidth =
+            if (crop == null) fullWidth else ((crop.right * fullWidth).toInt() - newCropX).coerceIn(2, fullWidth - newCropX)
+        val newCropHeight =
+            if (crop == null) fullHeight else ((crop.bottom * fullHeight).toInt() - newCropY).coerceIn(2, fullHeight - newCropY)
+
+        if (width == srcWidth && height == srcHeight && normalized == srcRotation &&
+            buffer.strideY == srcStrideY && buffer.strideU == srcStrideU && buffer.strideV == srcStrideV &&
+            newCropX == cropX && newCropY == cropY && newCropWidth == cropWidth && newCropHeight == cropHeight
+        ) {
+            return
+        }
+
+        srcWidth = width
+        srcHeight = height
+        srcRotation = normalized
+        srcStrideY = buffer.strideY
+        srcStrideU = buffer.strideU
+        srcStrideV = buffer.strideV
+        cropX = newCropX
+        cropY = newCropY
+        cropWidth = newCropWidth
+        cropHeight = newCropHeight
+
+        uprightWidth = fullWidth
+        uprightHeight = fullHeight
+
+        scale = min(targetWidth.toFloat() / cropWidth, targetHeight.toFloat() / cropHeight)
+        contentWidth = min((cropWidth * scale).roundToInt(), targetWidth)
+        contentHeight = min((cropHeight * scale).roundToInt(), targetHeight)
+        padX = (targetWidth - contentWidth) / 2
+        padY = (targetHeight - contentHeight) / 2
+
+        // 출력 좌표 (ox, oy) -> 회전된 좌표 (ux, uy) -> 원본 좌표 (sx, sy)
+        for (oy in 0 until contentHeight) {
+            val uy = cropY + min(((oy + 0.5f) / scale).toInt(), cropHeight - 1)
+            when (normalized) {
+                0 -> fillRow(oy, uy, true)
+                90 -> fillRow(oy, uy, false)
+                180 -> fillRow(oy, height - 1 - uy, true)
+                else -> fillRow(oy, width - 1 - uy, false)
+            }
+        }
+        for (ox in 0 until contentWidth) {
+            val ux = cropX + min(((ox + 0.5f) / scale).toInt(), cropWidth - 1)
+            when (normalized) {
+                0 -> fillCol(ox, ux, false)
+                90 -> fillCol(ox, height - 1 - ux, true)
+                180 -> fillCol(ox, width - 1 - ux, false)
+                else -> fillCol(ox, ux, true)
+            }
+        }
+
+        // Letterbox 여백은 검은색으로 한 번만 채움
+        val black = pixelLut[0]
+        for (i in 0 until outputBuffer.capacity()) {
+            outputBuffer.put(i, black)
+        }
+    }
+
+    // 행 성분 : isSourceRow 이면 원본의 sy, 아니면 원본의 sx
+    private fun fillRow(oy: Int, value: Int, isSourceRow: Boolean) {
+        if (isSourceRow) {
+            yRow[oy] = value * srcStrideY
+            uRow[oy] = (value shr 1) * srcStrideU
+            vRow[oy] = (value shr 1) * srcStrideV
+        } else {
+            yRow[oy] = value
+            uRow[oy] = value shr 1
+            vRow[oy] = value shr 1
+        }
+    }
+
+    // 열 성분 : isSourceRow 이면 원본의 sy, 아니면 원본의 sx
+    private fun fillCol(ox: Int, value: Int, isSourceRow: Boolean) {
+        if (isSourceRow) {
+            yCol[ox] = value * srcStrideY
+            uCol[ox] = (value shr 1) * srcStrideU
+            vCol[ox] = (value shr 1) * srcStrideV
+        } else {
+            yCol[ox] = value
+            uCol[ox] = value shr 1
+            vCol[ox] = value shr 1
+        }
+    }
+
+    private fun clamp(value: Int): Int {
+        return if (value < 0) 0 else if (value > 255) 255 else value
+    }
+
+    companion object {
+        const val CHANNELS = 3
+
+        // UINT8 RGB 를 그대로 사용하는 Table
+        val IDENTITY_LUT = ByteArray(256) { it.toByte() }
+    }
+}
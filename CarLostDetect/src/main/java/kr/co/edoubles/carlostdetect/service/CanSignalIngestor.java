@@ -0,0 +1,300 @@
+package kr.co.edoubles.carlostdetect.service;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AVN 에서 Broadcast 로 들어오는 CAN 신호 (문 / 좌석) 수집 단계
+ * <p>
+ * Receiver 는 전용 Thread 에서 실행되어 Main Thread 를 사용하지 않는다.
+ * 신호는 수신 시각 (System.nanoTime, 카메라 프레임 Timestamp 와 같은 기준) 과 함께 받아
+ * 신호 종류 + payload (msg_data, 예: 문 / 좌석 위치) 별로 debounce 시간 동안 유지된 변화만 확정한다.
+ * 같은 종류의 payload 중 하나라도 열림 / 착석이면 해당 신호는 true 이며,
+ * 이 상태가 바뀔 때 (edge) 신호 별 Ring buffer 에 저장한다.
+ * stateAt() 으로 프레임 Timestamp 시점의 신호 상태를 O(log n) 에 찾을 수 있다.
+ */
+public class CanSignalIngestor {
+
+    private static final String TAG = "CanSignalIngestor";
+
+    public static final int SIGNAL_DOOR = 0;
+    public static final int SIGNAL_SEAT = 1;
+    private static final int SIGNAL_COUNT = 2;
+
+    // AVN Broadcast Action / Extra (문 / 좌석 모두 msg_type 이 0 이 아니면 열림 / 착석, msg_data 는 CAN payload)
+    private static final String ACTION_DOOR = "TEST1";
+    private static final String ACTION_SEAT = "TEST2";
+    private static final String EXTRA_TYPE = "msg_type";
+    private static final String EXTRA_DATA = "msg_data";
+
+    public interface Listener {
+        /**
+         * debounce 후 확정된 신호 변화 (수집 Thread 에서 호출됨)
+         *
+         * @param signal SIGNAL_DOOR / SIGNAL_SEAT
+         * @param value  문 열림 / 좌석 착석 여부
+         * @param timeNs 변화가 처음 관측된 시각
+         */
+        void onSignalChanged(int signal, boolean value, long timeNs);
+    }
+
+    /**
+     * 확정된 신호 변화를 시간 순서로 저장하는 고정 크기 Ring buffer (primitive 배열)
+     */
+    static final class SignalRing {
+        private final long[] times;
+        private final boolean[] values;
+        private final int mask;
+        // 지금까지 저장한 전체 개수 (가장 오래된 항목은 count - size)
+        private long count = 0;
+
+        SignalRing(int capacity) {
+            int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+            times = new long[size];
+            values = new boolean[size];
+            mask = size - 1;
+        }
+
+        synchronized void append(long timeNs, boolean value) {
+            int index = (int) (count & mask);
+            times[index] = timeNs;
+            values[index] = value;
+            count++;
+        }
+
+        /**
+         * timeNs 시점의 상태 (해당 시점 이전 마지막 변화), 기록이 없으면 defaultValue
+         */
+        synchronized boolean stateAt(long timeNs, boolean defaultValue) {
+            long oldest = Math.max(0, count - times.length);
+            long low = oldest;
+            long high = count - 1;
+            long found = -1;
+
+            // times[index] <= timeNs 인 마지막 항목 이진 탐색
+            while (low <= high) {
+                long mid = (low + high) >>> 1;
+                if (times[(int) (mid & mask)] <= timeNs) {
+                    found = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (found < 0) {
+                // 기록보다 이전 시점이면 가장 오래된 변화의 반대 상태
+                return count == 0 ? defaultValue : !values[(int) (oldest & mask)];
+            }
+            return values[(int) (found & mask)];
+        }
+
+        synchronized boolean latest(boolean defaultValue) {
+            return count == 0 ? defaultValue : values[(int) ((count - 1) & mask)];
+        }
+
+        synchronized long size() {
+            return Math.min(count, times.length);
+        }
+    }
+
+    private final Listener listener;
+    private final long debounceNs;
+    private final HandlerThread ingestThread;
+    private final Handler ingestHandler;
+
+    private final SignalRing[] rings = new SignalRing[SIGNAL_COUNT];
+
+    /**
+     * 신호 종류 + payload 하나의 debounce 상태 (수집 Thread 에서만 사용)
+     */
+    private final class Source {
+        final int signal;
+        final String payload;
+        boolean committed;
+        boolean pending;
+        boolean pendingActive;
+        long pendingTimeNs;
+        final Runnable commitRunnable = () -> commit(this);
+
+        Source(int signal, String payload) {
+            this.signal = signal;
+            this.payload = payload;
+        }
+    }
+
+    // 수집 Thread 에서만 사용 - key 는 "신호/payload"
+    private final HashMap<String, Source> sources = new HashMap<>();
+    // 신호 별 열림 / 착석으로 확정된 Source 개수 (수집 Thread 에서만 사용)
+    private final int[] activeSources = new int[SIGNAL_COUNT];
+
+    // 통계 값들 (release 에서 다른 Thread 가 읽음)
+    private final AtomicLong receivedSignals = new AtomicLong();
+    private final AtomicLong bouncedSignals = new AtomicLong();
+
+    private final BroadcastReceiver doorReceiver = new SignalReceiver(SIGNAL_DOOR);
+    private final BroadcastReceiver seatReceiver = new SignalReceiver(SIGNAL_SEAT);
+
+    public CanSignalIngestor(long debounceMs, int historySize, Listener listener) {
+        this.listener = listener;
+        this.debounceNs = TimeUnit.MILLISECONDS.toNanos(debounceMs);
+
+        for (int signal = 0; signal < SIGNAL_COUNT; signal++) {
+            rings[signal] = new SignalRing(historySize);
+        }
+
+        ingestThread = new HandlerThread("CanSignalThread", Process.THREAD_PRIORITY_BACKGROUND);
+        ingestThread.start();
+        ingestHandler = new Handler(ingestThread.getLooper());
+    }
+
+    /**
+     * 문 / 좌석 Receiver 등록 (onReceive 는 수집 Thread 에서 실행)
+     */
+    public void register(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.registerReceiver(doorReceiver, new IntentFilter(ACTION_DOOR), null, ingestHandler,
+                    Context.RECEIVER_EXPORTED);
+            context.registerReceiver(seatReceiver, new IntentFilter(ACTION_SEAT), null, ingestHandler,
+                    Context.RECEIVER_EXPORTED);
+        } else {
+            context.registerReceiver(doorReceiver, new IntentFilter(ACTION_DOOR), null, ingestHandler);
+            context.registerReceiver(seatReceiver, new IntentFilter(ACTION_SEAT), null, ingestHandler);
+        }
+    }
+
+    private class SignalReceiver extends BroadcastReceiver {
+        private final int signal;
+
+        SignalReceiver(int signal) {
+            this.signal = signal;
+        }
+
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            long timeNs = System.nanoTime();
+            int type = intent.getIntExtra(EXTRA_TYPE, 0);
+            String data = intent.getStringExtra(EXTRA_DATA);
+            onSample(signal, data == null ? "" : data, type != 0, timeNs);
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "ReceivedData : " + signal + " - " + type + " : " + data);
+            }
+        }
+    }
+
+    /**
+     * 수집 Thread 에서 신호 하나 처리
+     * 같은 payload 의 확정 상태와 다른 값이 debounce 시간 동안 유지되어야 변화로 확정한다
+     */
+    private void onSample(int signal, String payload, boolean value, long timeNs) {
+        receivedSignals.incrementAndGet();
+        String key = signal + "/" + payload;
+        Source source = sources.get(key);
+
+        if (source == null) {
+            // 처음 보는 payload 의 첫 신호는 기준 상태이므로 바로 확정
+            source = new Source(signal, payload);
+            sources.put(key, source);
+            source.pending = value;
+            source.pendingTimeNs = timeNs;
+            commit(source);
+            return;
+        }
+
+        if (value == source.committed) {
+            // 확정 전에 원래 값으로 돌아온 경우 (잡음)
+            if (source.pendingActive) {
+                source.pendingActive = false;
+                ingestHandler.removeCallbacks(source.commitRunnable);
+                bouncedSignals.incrementAndGet();
+            }
+            return;
+        }
+        if (source.pendingActive && source.pending == value) {
+            // 같은 변화가 반복 수신됨 (Burst) - 처음 관측 시각 유지
+            return;
+        }
+
+        source.pendingActive = true;
+        source.pending = value;
+        source.pendingTimeNs = timeNs;
+        ingestHandler.removeCallbacks(source.commitRunnable);
+        ingestHandler.postDelayed(source.commitRunnable, TimeUnit.NANOSECONDS.toMillis(debounceNs));
+    }
+
+    /**
+     * Source 의 변화 확정 - 신호 전체 상태 (payload 중 하나라도 true) 가 바뀌면 Ring buffer 에 기록
+     */
+    private void commit(Source source) {
+        int signal = source.signal;
+        boolean first = rings[signal].size() == 0;
+        boolean before = activeSources[signal] > 0;
+
+        source.pendingActive = false;
+        if (source.committed != source.pending || first) {
+            if (source.committed) {
+                activeSources[signal]--;
+            }
+            if (source.pending) {
+                activeSources[signal]++;
+            }
+            source.committed = source.pending;
+        }
+
+        boolean after = activeSources[signal] > 0;
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "commit: " + signal + "/" + source.payload + " = " + source.pending + " -> " + after);
+        }
+        if (!first && before == after) {
+            return;
+        }
+        rings[signal].append(source.pendingTimeNs, after);
+        if (listener != null) {
+            listener.onSignalChanged(signal, after, source.pendingTimeNs);
+        }
+    }
+
+    /**
+     * timeNs 시점의 신호 상태 (이진 탐색, 어느 Thread 에서나 호출 가능)
+     *
+     * @param timeNs 0 이하면 현재 상태
+     */
+    public boolean stateAt(int signal, long timeNs) {
+        SignalRing ring = rings[signal];
+        return timeNs <= 0 ? ring.latest(false) : ring.stateAt(timeNs, false);
+    }
+
+    public boolean isDoorOpen(long timeNs) {
+        return stateAt(SIGNAL_DOOR, timeNs);
+    }
+
+    public boolean isSeatOccupied(long timeNs) {
+        return stateAt(SIGNAL_SEAT, timeNs);
+    }
+
+    /**
+     * Receiver 해제 및 수집 Thread 종료
+     */
+    public void release(Context context) {
+        try {
+            context.unregisterReceiver(doorReceiver);
+            context.unregisterReceiver(seatReceiver);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "등록되지 않은 Receiver", e);
+        }
+        ingestHandler.removeCallbacksAndMessages(null);
+        ingestThread.quitSafely();
+        Log.d(TAG, "CanSignalIngestor 종료됨 - received: " + receivedSignals.get() + ", bounced: " + bouncedSignals.get()
+                + ", door edges: " + rings[SIGNAL_DOOR].size() + ", seat edges: " + rings[SIGNAL_SEAT].size());
+    }
+}
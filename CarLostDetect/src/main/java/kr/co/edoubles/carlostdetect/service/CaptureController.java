@@ -0,0 +1,179 @@
+package kr.co.edoubles.carlostdetect.service;
+
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.CAPTURE_IDLE_TIMEOUT;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.POST_EXIT_CHECK_TIME;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import kr.co.edoubles.carlostdetect.utils.BoardingStatus;
+import kr.co.edoubles.carlostdetect.utils.CaptureMode;
+
+/**
+ * 문 / 좌석 신호와 사람 인식 결과로 BoardingStatus 를 관리하고 카메라 / 탐지 동작 단계를 정하는 Class
+ * <p>
+ * - 문이 열리면 ACTIVE (최대 주기로 캡처 / 탐지)
+ * - 문이 닫히고 좌석에 사람이 있으면 주행 중으로 보고 LOW_RATE
+ * - 하차 후 문이 닫히면 분실물 확인을 위해 잠시 더 동작한 뒤 OFF
+ * <p>
+ * 센서 신호를 한 번도 받지 못한 경우에는 기존처럼 항상 ACTIVE 로 동작한다.
+ * 동작 단계 변경은 Main Thread 에서 Callback 으로 전달된다.
+ */
+public class CaptureController {
+
+    private static final String TAG = "CaptureController";
+
+    public interface Callback {
+        /**
+         * Main Thread 에서 호출됨
+         */
+        void onCaptureModeChanged(CaptureMode mode);
+    }
+
+    private final Callback callback;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable shutdownRunnable = this::shutdown;
+
+    private BoardingStatus status = BoardingStatus.BEFORE;
+    private CaptureMode mode = CaptureMode.ACTIVE;
+    private boolean door = false;
+    private boolean seat = false;
+    private boolean human = false;
+
+    // 센서 신호를 받은 적이 있는지 (없으면 항상 ACTIVE)
+    private boolean sensorGated = false;
+    // 하차가 확인되어 분실물 확인이 필요한 상태
+    private boolean exitPending = false;
+    // 하차 후 정지 전 확인 중인 상태 (짧은 시간 뒤 정지)
+    private boolean postExitCheck = false;
+    private boolean shutdownScheduled = false;
+
+    public CaptureController(Callback callback) {
+        this.callback = callback;
+    }
+
+    public synchronized void setDoor(boolean open) {
+        sensorGated = true;
+        door = open;
+        evaluate();
+    }
+
+    public synchronized void setSeat(boolean occupied) {
+        sensorGated = true;
+        seat = occupied;
+        evaluate();
+    }
+
+    /**
+     * 탐지 결과의 사람 인식 여부 (후처리 Thread 에서 호출)
+     */
+    public synchronized void setHuman(boolean detected) {
+        if (human == detected) {
+            return;
+        }
+        human = detected;
+        if (sensorGated) {
+            evaluate();
+        }
+    }
+
+    public synchronized boolean isSensorGated() {
+        return sensorGated;
+    }
+
+    public synchronized BoardingStatus getStatus() {
+        return status;
+    }
+
+    public synchronized CaptureMode getMode() {
+        return mode;
+    }
+
+    /**
+     * 하차 확인 이후 처음 호출되면 true (분실물 확인은 한 번만 수행)
+     */
+    public synchronized boolean consumeExit() {
+        boolean pending = exitPending;
+        exitPending = false;
+        return pending;
+    }
+
+    /**
+     * 기존 SampleCanLogic 의 상태 전이에 카메라 동작 단계를 더한 것
+     */
+    private void evaluate() {
+        switch (status) {
+            case BEFORE:
+                if (door) {
+                    status = BoardingStatus.DURING;
+                }
+                break;
+
+            case DURING:
+                if (!door && seat && human) {
+                    status = BoardingStatus.AFTER;
+                } else if (!door) {
+                    status = BoardingStatus.BEFORE;
+                }
+                break;
+
+            case AFTER:
+                if (door && !seat && !human) {
+                    Log.d(TAG, "하차 확인 - 분실물 확인 예정");
+                    exitPending = true;
+                    postExitCheck = true;
+                    status = BoardingStatus.DURING;
+                }
+                break;
+
+            default:
+                break;
+        }
+
+        if (door) {
+            // 문이 열려 있는 동안은 최대 주기
+            scheduleShutdown(false);
+            changeMode(CaptureMode.ACTIVE);
+        } else if (status == BoardingStatus.AFTER) {
+            // 주행 중 : 저속으로 상태만 유지
+            scheduleShutdown(false);
+            changeMode(CaptureMode.LOW_RATE);
+        } else if (status == BoardingStatus.BEFORE && mode != CaptureMode.OFF) {
+            // 빈 차량 : 분실물 확인 / 기준 상태 갱신 후 정지
+            changeMode(CaptureMode.ACTIVE);
+            scheduleShutdown(true);
+        }
+    }
+
+    private void scheduleShutdown(boolean schedule) {
+        if (schedule == shutdownScheduled) {
+            return;
+        }
+        shutdownScheduled = schedule;
+        mainHandler.removeCallbacks(shutdownRunnable);
+        if (schedule) {
+            mainHandler.postDelayed(shutdownRunnable, postExitCheck ? POST_EXIT_CHECK_TIME : CAPTURE_IDLE_TIMEOUT);
+        }
+    }
+
+    private synchronized void shutdown() {
+        shutdownScheduled = false;
+        postExitCheck = false;
+        changeMode(CaptureMode.OFF);
+    }
+
+    private void changeMode(CaptureMode newMode) {
+        if (mode == newMode) {
+            return;
+        }
+        Log.d(TAG, "CaptureMode : " + mode + " -> " + newMode + " (status: " + status
+                + ", door: " + door + ", seat: " + seat + ", human: " + human + ")");
+        mode = newMode;
+        mainHandler.post(() -> callback.onCaptureModeChanged(newMode));
+    }
+
+    public void release() {
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+}
@@ -1,12 +1,31 @@
 package kr.co.edoubles.carlostdetect.service;
 
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.CAN_DEBOUNCE_TIME;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.CAN_HISTORY_SIZE;
 import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.CAPTURE_FPS;
 import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.CAPTURE_HEIGHT;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.CAPTURE_LOW_FPS;
 import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.CAPTURE_WIDTH;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.DETECT_BOX_TOLERANCE;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.DETECT_FRAME_MAX_SIDE;
 import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.DETECT_INTERVAL;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.DETECT_KEYFRAME_INTERVAL;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.DETECT_LOW_RATE_INTERVAL;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.DETECT_ROI_FRAME_MAX_SIDE;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.EVIDENCE_CROP_MARGIN;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.EVIDENCE_JPEG_QUALITY;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.EVIDENCE_RING_SIZE;
 import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.FOREGROUND_CHANNEL_ID;
 import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.FOREGROUND_ID;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.JOURNAL_DIR;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.JOURNAL_MAX_SEGMENTS;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.JOURNAL_QUEUE_SIZE;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.JOURNAL_SEGMENT_SIZE;
 import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.LOCAL_VIDEO_TRACK_ID;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.LOST_NOTIFICATION_ID;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.PREVIEW_FPS;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.PREVIEW_MAX_SIDE;
+import static kr.co.edoubles.carlostdetect.utils.ConstantsKt.STREAM_FPS;
 
 import android.Manifest;
 import android.app.ForegroundServiceStartNotAllowedException;
@@ -14,26 +33,22 @@ import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.Service;
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.content.pm.ServiceInfo;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.ImageFormat;
-import android.graphics.Rect;
-import android.graphics.YuvImage;
+import android.graphics.Matrix;
 import android.os.Binder;
 import android.os.Build;
 import android.os.IBinder;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.annotation.RequiresApi;
 import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
 import androidx.core.app.ServiceCompat;
 import androidx.core.content.ContextCompat;
 
@@ -42,36 +57,40 @@ import org.webrtc.Camera1Enumerator;
 import org.webrtc.Camera2Enumerator;
 import org.webrtc.CameraEnumerator;
 import org.webrtc.EglBase;
-import org.webrtc.IceCandidate;
 import org.webrtc.RtpTransceiver;
 import org.webrtc.SessionDescription;
 import org.webrtc.SurfaceTextureHelper;
 import org.webrtc.VideoCapturer;
-import org.webrtc.VideoFrame;
 import org.webrtc.VideoSink;
 import org.webrtc.VideoSource;
 import org.webrtc.VideoTrack;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
 
 import kr.co.edoubles.awsiotmqtt.AWSIotMqtt;
 import kr.co.edoubles.awsiotmqtt.OnMqttCallback;
 import kr.co.edoubles.carlostdetect.EglBaseManager;
 import kr.co.edoubles.carlostdetect.R;
 import kr.co.edoubles.carlostdetect.alert.AlertHelper;
+import kr.co.edoubles.carlostdetect.detect.DetectionRoi;
+import kr.co.edoubles.carlostdetect.detect.DetectorEngineType;
 import kr.co.edoubles.carlostdetect.detect.DetectorListener;
+import kr.co.edoubles.carlostdetect.detect.LabelHistogram;
+import kr.co.edoubles.carlostdetect.detect.LabelRegistry;
 import kr.co.edoubles.carlostdetect.detect.ObjectDetectStatus;
 import kr.co.edoubles.carlostdetect.detect.ObjectDetectorHelper;
+import kr.co.edoubles.carlostdetect.detect.ObjectTracker;
 import kr.co.edoubles.carlostdetect.utils.BoardingStatus;
+import kr.co.edoubles.carlostdetect.utils.CaptureMode;
+import kr.co.edoubles.carlostdetect.utils.RoiPreferences;
+import kr.co.edoubles.webrtc.IceCandidateBatch;
 import kr.co.edoubles.webrtc.OnPeerCallback;
 import kr.co.edoubles.webrtc.PeerManager;
 
@@ -85,7 +104,9 @@ public class CarLostDetectService extends Service {
     private SurfaceTextureHelper surfaceTextureHelper;
     private VideoSource videoSource;
     private VideoTrack localVideoTrack;
-    private VideoSink videoSink;
+    private DetectionScheduler detectionScheduler;
+    // Capturer 프레임을 스트리밍 / 미리보기 / 탐지에 각자의 fps 로 나눠줌
+    private volatile FrameFanout frameFanout;
 
 
     // AWS MQTT 를 위한 변수들
@@ -94,33 +115,47 @@ public class CarLostDetectService extends Service {
 
     // Listener 및 Helper Class
     private ServiceListener listener;
+    // 화면에 최신 탐지 상태만 전달 (vsync 마다 최대 한 번, 화면이 연결되어 있을 때만)
+    private final UiStateChannel uiStateChannel = new UiStateChannel();
     private ObjectDetectorHelper objectDetectorHelper;
     private AlertHelper alertHelper;
 
-    private ExecutorService executorService;
+    private DetectionPipeline detectionPipeline;
 
     // 물체 식별 Logic에 필요한 변수들
     private ObjectDetectStatus detectorStatus = ObjectDetectStatus.NOT_DETECT;
-    private String objectLabels = "";
-    private ArrayList<String> excludeLabels;
-    private ArrayList<String> beforeList = new ArrayList<>();
-    private ArrayList<String> afterList = new ArrayList<>();
+    // Label 은 ID 로 바꿔 Bitset / 개수 Histogram 으로 비교 (모델 Label 순서로 미리 등록)
+    private LabelRegistry labelRegistry;
+    private BitSet excludeLabelIds = new BitSet();
+    private int personLabelId;
+    private final LabelHistogram beforeItems = new LabelHistogram();
+    private final LabelHistogram currentItems = new LabelHistogram();
+    private final LabelHistogram lostItems = new LabelHistogram();
+    private final StringBuilder lostBuilder = new StringBuilder();
+    // 탐지 결과를 Binary (Delta / Keyframe) 메시지로 Data Channel 에 전송
+    private DetectionFrameEncoder detectionFrameEncoder;
+    // 추론 사이에서 물체 ID 를 유지해 한 번의 누락 / 깜빡임이 상태를 바꾸지 않도록 함
+    private final ObjectTracker objectTracker = new ObjectTracker();
+    // 후처리 Thread 에서만 사용 - 탐지 결과 순서대로 연결된 Track ID
+    private final int[] resultTrackIds = new int[DetectionFrameEncoder.MAX_ITEMS];
+
+    // 최근 탐지 프레임과 분실물 증거 사진
+    private EvidenceFrameRing evidenceFrameRing;
+    private EvidenceEncoder evidenceEncoder;
+    // 탐지 결과 / 분실물 이벤트 기록
+    private DetectionJournal detectionJournal;
 
     // 상태 값들
-    private boolean isProcessing = false;
     private boolean personCheck = false;
     private boolean isActive = false;
 
-    // CAN이 물린 후 사용할 Logic에 사용될 변수들
-    private BoardingStatus status = BoardingStatus.BEFORE;
-    private boolean door = false;
-    private boolean seat = false;
-    private boolean human = false;
+    // 문 / 좌석 신호로 BoardingStatus 와 카메라 동작 단계를 관리
+    private volatile CaptureController captureController;
+    private boolean isCapturing = false;
     private boolean isDeleted = true;
 
-    // AVN 에서 CAN 신호를 받기 위한 BroadCastReceiver
-    private BroadcastReceiver doorBroadcastReceiver;
-    private BroadcastReceiver seatBroadcastReceiver;
+    // AVN 에서 CAN 신호를 받아 Timestamp / debounce 처리하는 수집 단계
+    private CanSignalIngestor canSignalIngestor;
 
     /**
      * Activity 와 Bind 하기위해 사용하는 변수와 클래스
@@ -142,9 +177,7 @@ public class CarLostDetectService extends Service {
         if (isDeleted) {
             init();
         }
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            enrollReceiver();
-        }
+        enrollReceiver();
         super.onCreate();
     }
 
@@ -167,7 +200,7 @@ public class CarLostDetectService extends Service {
 
         delete();
         // 리시버 해제
-        unregisterReceiver(doorBroadcastReceiver);
+        canSignalIngestor.release(this);
 
         super.onDestroy();
     }
@@ -176,33 +209,46 @@ public class CarLostDetectService extends Service {
         createNotificationChannel();
         startForeground();
 
-        executorService = Executors.newSingleThreadExecutor();
-
         EglBaseManager.setServiceState(true);
         eglBase = EglBaseManager.getEglBaseInstance();
 
-        videoSink = new VideoSink() {
-            @Override
-            public void onFrame(VideoFrame videoFrame) {
-                detectObject(videoFrame);
-            }
-        };
         surfaceTextureHelper = SurfaceTextureHelper.create("CaptureThread", eglBase.getEglBaseContext());
 
         initDetector();
+        // 첫 프레임 전에 모델 로드 및 Warm-up (추론 Thread 에서 실행)
+        detectionPipeline.requestPrepare();
         initAlertHelper();
         initExcludedLabels();
 
-        status = BoardingStatus.BEFORE;
-        door = false;
-        seat = false;
-        human = false;
+        captureController = new CaptureController(this::applyCaptureMode);
 
         isDeleted = false;
     }
 
     private void initDetector() {
         objectDetectorHelper = new ObjectDetectorHelper(0.5f, 5, this, new objectDetectorListener());
+        // Label ID 를 모델 Class 순서로 고정 (추론 Thread 시작 전, 매 프레임 조회는 lock 없이 처리)
+        labelRegistry = new LabelRegistry(objectDetectorHelper.loadModelLabels());
+        detectionFrameEncoder = new DetectionFrameEncoder(labelRegistry, DETECT_KEYFRAME_INTERVAL, DETECT_BOX_TOLERANCE);
+        // Capture Thread 와 분리된 Worker 에서 최신 프레임만 변환하고, 추론 / 후처리는 Pipeline 으로 넘김
+        detectionPipeline = new DetectionPipeline(objectDetectorHelper);
+        detectionScheduler = new DetectionScheduler(DETECT_INTERVAL, DETECT_FRAME_MAX_SIDE, detectionPipeline);
+        // 추론한 프레임을 보관해 두었다가 분실물 이벤트 시 증거 사진으로 사용
+        evidenceFrameRing = new EvidenceFrameRing(EVIDENCE_RING_SIZE);
+        evidenceEncoder = new EvidenceEncoder(evidenceFrameRing, EVIDENCE_JPEG_QUALITY, EVIDENCE_CROP_MARGIN);
+        detectionPipeline.setFrameRing(evidenceFrameRing);
+        detectionJournal = new DetectionJournal(new File(getFilesDir(), JOURNAL_DIR), JOURNAL_SEGMENT_SIZE,
+                JOURNAL_MAX_SEGMENTS, JOURNAL_QUEUE_SIZE, labelRegistry);
+        // 기기 별로 저장된 탐지 영역 적용
+        applyDetectionRois(RoiPreferences.INSTANCE.load(this));
+    }
+
+    /**
+     * ROI 를 쓰면 작은 영역을 잘라 쓰므로 탐지용 프레임을 더 큰 크기로 읽어옴
+     */
+    private void applyDetectionRois(List<DetectionRoi> rois) {
+        objectDetectorHelper.setRois(rois);
+        detectionScheduler.setMaxDetectionSide(rois.isEmpty() ? DETECT_FRAME_MAX_SIDE : DETECT_ROI_FRAME_MAX_SIDE);
     }
 
     private void initAlertHelper() {
@@ -211,7 +257,8 @@ public class CarLostDetectService extends Service {
 
     private void initExcludedLabels() {
         String[] tmp = getResources().getStringArray(R.array.exclude_labels);
-        excludeLabels = new ArrayList<>(Arrays.asList(tmp));
+        excludeLabelIds = labelRegistry.toBitSet(Arrays.asList(tmp));
+        personLabelId = labelRegistry.idOf(getResources().getString(R.string.person_label));
     }
 
     public void processCommand(String name) {
@@ -262,9 +309,35 @@ public class CarLostDetectService extends Service {
                 Log.d(TAG, "VideoCapturer 리소스 해제됨");
             }
         }
-        if (executorService != null && !executorService.isShutdown()) {
-            executorService.shutdownNow();
-            Log.d(TAG, "ExecutorService 종료됨");
+        isCapturing = false;
+        if (captureController != null) {
+            captureController.release();
+        }
+        // 탐지 Worker 를 먼저 멈춘 뒤 Detector 를 해제
+        if (detectionScheduler != null) {
+            if (frameFanout != null) {
+                frameFanout.release();
+                frameFanout = null;
+            }
+            detectionScheduler.release();
+            detectionScheduler = null;
+            Log.d(TAG, "DetectionScheduler 리소스 해제됨");
+        }
+        if (detectionPipeline != null) {
+            detectionPipeline.release();
+            detectionPipeline = null;
+            Log.d(TAG, "DetectionPipeline 리소스 해제됨");
+        }
+        if (evidenceEncoder != null) {
+            evidenceEncoder.release();
+            evidenceEncoder = null;
+            evidenceFrameRing = null;
+            Log.d(TAG, "EvidenceEncoder 리소스 해제됨");
+        }
+        if (detectionJournal != null) {
+            detectionJournal.release();
+            detectionJournal = null;
+            Log.d(TAG, "DetectionJournal 리소스 해제됨");
         }
         objectDetectorHelper.clearObjectDetector();
         alertHelper.release();
@@ -281,7 +354,6 @@ public class CarLostDetectService extends Service {
 
         if (localVideoTrack != null) {
             localVideoTrack.setEnabled(false);
-            localVideoTrack.removeSink(videoSink);
             localVideoTrack = null;
             Log.d(TAG, "LocalVideoTrack 리소스 해제됨");
         }
@@ -295,6 +367,7 @@ public class CarLostDetectService extends Service {
             peerManager.deleteAllPeers();
             peerManager.deleteAllDataChannels();
             peerManager = null;
+            detectionFrameEncoder.clear();
             Log.d(TAG, "PeerManager 리소스 해제됨");
         }
 
@@ -326,10 +399,83 @@ public class CarLostDetectService extends Service {
         Log.d(TAG, "---Got Active Data From MainActivity : " + this.isActive + "---");
     }
 
+    /**
+     * 실행 중 탐지 Backend 변경 (Task Library / Interpreter + XNNPACK Thread 수)
+     */
+    public void setDetectorEngine(DetectorEngineType type, int numThreads) {
+        if (objectDetectorHelper != null) {
+            objectDetectorHelper.setEngine(type, numThreads);
+        }
+        // 다음 프레임을 기다리지 않고 추론 Thread 에서 바로 교체
+        if (detectionPipeline != null) {
+            detectionPipeline.requestPrepare();
+        }
+    }
+
+    /**
+     * 탐지 영역 (좌석, 발판 등) 설정 및 저장, 빈 목록이면 전체 프레임 탐지
+     */
+    public void setDetectionRois(List<DetectionRoi> rois) {
+        RoiPreferences.INSTANCE.save(this, rois);
+        if (objectDetectorHelper != null && detectionScheduler != null) {
+            applyDetectionRois(rois);
+        }
+    }
+
+    /**
+     * 지금까지 전체 프레임에서 탐지된 위치로 탐지 영역을 학습해 적용
+     */
+    public List<DetectionRoi> learnRoisFromHeatmap() {
+        if (objectDetectorHelper == null) {
+            return new ArrayList<>();
+        }
+        List<DetectionRoi> rois = objectDetectorHelper.getRoiHeatmap().learnRois(0.2f, 1);
+        Log.d(TAG, "learnRoisFromHeatmap: " + rois.size() + " ROI, samples: "
+                + objectDetectorHelper.getRoiHeatmap().getSampleCount());
+        if (!rois.isEmpty()) {
+            setDetectionRois(rois);
+        }
+        return rois;
+    }
+
+    /**
+     * 양자화 / float 모델 추론 시간 비교 (결과는 Log 로 확인)
+     */
+    public void benchmarkDetector() {
+        if (detectionPipeline != null && objectDetectorHelper != null) {
+            detectionPipeline.runOnInferThread(objectDetectorHelper::benchmarkModels);
+        }
+    }
+
+    public ObjectTracker getObjectTracker() {
+        return objectTracker;
+    }
+
     public void setVideoTrackListener(ServiceListener listener) {
         this.listener = listener;
     }
 
+    public UiStateChannel getUiStateChannel() {
+        return uiStateChannel;
+    }
+
+    /**
+     * 미리보기 Sink 등록 (화면이 보일 때만 등록해 두어야 백그라운드에서 비용이 없음)
+     */
+    public void addPreviewSink(VideoSink sink) {
+        FrameFanout fanout = frameFanout;
+        if (fanout != null) {
+            fanout.addSink(sink, PREVIEW_FPS, PREVIEW_MAX_SIDE);
+        }
+    }
+
+    public void removePreviewSink(VideoSink sink) {
+        FrameFanout fanout = frameFanout;
+        if (fanout != null) {
+            fanout.removeSink(sink);
+        }
+    }
+
     /**
      * Notification Channel 등록 메소드
      */
@@ -420,15 +566,16 @@ public class CarLostDetectService extends Service {
         videoSource = peerManager.getPeerConnectionFactory().createVideoSource(videoCapturer.isScreencast());
         localVideoTrack = peerManager.getPeerConnectionFactory().createVideoTrack(LOCAL_VIDEO_TRACK_ID, videoSource);
 
-        localVideoTrack.addSink(videoSink);
+        // 스트리밍은 VideoSource 가 Native 에서 해상도 / fps 를 맞추고,
+        // 탐지는 DetectionScheduler 가 자체 주기로 변환 전에 거르므로 Fanout 에서는 제한하지 않음
+        videoSource.adaptOutputFormat(CAPTURE_WIDTH, CAPTURE_HEIGHT, STREAM_FPS);
+        frameFanout = new FrameFanout(videoSource.getCapturerObserver());
+        frameFanout.addSink(detectionScheduler, 0, 0);
 
-        videoCapturer.initialize(surfaceTextureHelper, getApplicationContext(), videoSource.getCapturerObserver());
+        videoCapturer.initialize(surfaceTextureHelper, getApplicationContext(), frameFanout);
 
-        try {
-            videoCapturer.startCapture(CAPTURE_WIDTH, CAPTURE_HEIGHT, CAPTURE_FPS);
-        } catch (Exception e) {
-            Log.e(TAG, "비디오 캡처 시작 중 오류 발생", e);
-        }
+        // 센서 신호로 이미 정해진 동작 단계가 있으면 그대로 적용
+        applyCaptureMode(captureController.getMode());
     }
 
     private VideoCapturer createVideoCapturer() {
@@ -468,91 +615,58 @@ public class CarLostDetectService extends Service {
         return null;
     }
 
-    private void detectObject(VideoFrame videoFrame) {
-        Bitmap bitmap = videoFrameToBitmap(videoFrame);
+    public List<Detection> filterDetections(List<Detection> detections, BitSet excludeIds) {
+        // detections가 null일 경우 null을 반환
+        if (detections == null) {
+            return null;
+        }
 
-        try {
-            Log.d(TAG, "detectObject: " + videoFrame);
-            objectDetectorHelper.detect(bitmap, videoFrame.getRotation());
-        } finally {
-            if (bitmap != null && !bitmap.isRecycled()) {
-                bitmap.recycle();
+        // 제외할 물체가 없으면 (대부분의 프레임) 새 리스트를 만들지 않고 그대로 사용
+        int first = -1;
+        for (int i = 0; i < detections.size(); i++) {
+            if (excludeIds.get(labelIdOf(detections.get(i)))) {
+                first = i;
+                break;
             }
         }
-    }
-
-    private Bitmap videoFrameToBitmap(VideoFrame videoFrame) {
-        // I420Buffer 추출 (YUV 포맷의 버퍼)
-        VideoFrame.I420Buffer i420Buffer = videoFrame.getBuffer().toI420();
-
-        try {
-            // Y, U, V Plane 데이터를 가져옴
-            ByteBuffer yPlane = i420Buffer.getDataY();
-            ByteBuffer uPlane = i420Buffer.getDataU();
-            ByteBuffer vPlane = i420Buffer.getDataV();
-
-            int ySize = yPlane.remaining();
-            int uSize = uPlane.remaining();
-            int vSize = vPlane.remaining();
-
-            byte[] nv21 = new byte[ySize + uSize + vSize];
-
-            yPlane.get(nv21, 0, ySize);
-            vPlane.get(nv21, ySize, vSize);
-            uPlane.get(nv21, ySize + vSize, uSize);
-
-            YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, i420Buffer.getWidth(), i420Buffer.getHeight(), null);
+        if (first < 0) {
+            return detections;
+        }
 
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            yuvImage.compressToJpeg(new Rect(0, 0, i420Buffer.getWidth(), i420Buffer.getHeight()), 100, out);
-            byte[] imageBytes = out.toByteArray();
-            return BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
-        } finally {
-            // I420Buffer 해제
-            i420Buffer.release();
+        ArrayList<Detection> filtered = new ArrayList<>(detections.size());
+        for (int i = 0; i < detections.size(); i++) {
+            Detection detection = detections.get(i);
+            // 제외 Label Bitset 에 없으면 필터링 통과
+            if (i != first && !excludeIds.get(labelIdOf(detection))) {
+                filtered.add(detection);
+            }
         }
+        return filtered;
     }
 
-    public List<Detection> filterDetections(List<Detection> detections, List<String> excludeClasses) {
-        // detections가 null일 경우 null을 반환
-        if (detections == null) {
-            return null;
-        }
+    private int labelIdOf(Detection detection) {
+        return labelRegistry.idOf(detection.getCategories().get(0).getLabel());
+    }
 
-        // 스트림을 사용하여 필터링 및 변환
-        return detections.stream()
-                .filter(detection -> {
-                    // Detection 객체의 클래스 이름 (label)을 가져옴
-                    String detectedClass = detection.getCategories().get(0).getLabel();
-                    // 제외 클래스 목록에 없으면 필터링 통과
-                    boolean hasExclude = excludeClasses.contains(detectedClass);
-                    Log.d(TAG, "filterDetections: " + detectedClass + " hasExclude " + hasExclude);
-                    return !hasExclude;
-                })
-                .collect(Collectors.toCollection(ArrayList::new)); // 결과를 ArrayList로 변환
-    }
-
-    public void processResults(List<Detection> results, int imageHeight, int imageWidth) {
-        // 식별된 Item 정보들을 임시 저장하는 변수
-        ArrayList<String> items = new ArrayList<>();
-
-        // 식별된 Item 정보 수신 측에 전달 & tmp 배열에 저장
-        Log.d(TAG, "processResults: " + results);
-        for (Detection detection : results) {
-            String message = detection.getCategories().get(0).getLabel();
-            objectLabels += message + "/";
-            items.add(message);
-        }
-
-        // CAN 통신이 물리면 사용할 분실물 탐지 로직
-        /*
-        SampleCanLogic(items);
-         */
-        // 위 메소드 사용 시 아래 if-else문 삭제
-
-        // 사람이 인식되었다면 사람 승차 확인, 사람이 인식되지 않았다면 beforeList에 현재 상태 저장
-        Log.d(TAG, "processResults: items" + items);
-        if (items.contains(getResources().getString(R.string.person_label))) {
+    public void processResults(List<Detection> results, int imageHeight, int imageWidth, long timestampNs) {
+        // 식별된 Item 정보 Label 별 개수로 저장 (매 프레임 호출되므로 Debug Log 는 활성화된 경우만 문자열 생성)
+        boolean debug = Log.isLoggable(TAG, Log.DEBUG);
+        if (debug) {
+            Log.d(TAG, "processResults: " + results);
+        }
+        // 확정된 추적 물체만 현재 상태로 사용
+        objectTracker.update(results, SystemClock.uptimeMillis());
+        currentItems.clear();
+        objectTracker.appendConfirmed(currentItems, labelRegistry);
+
+        // 문 / 좌석 신호를 받고 있으면 CAN 기반 분실물 탐지 로직 사용
+        if (debug) {
+            Log.d(TAG, "processResults: items" + currentItems);
+        }
+        if (captureController.isSensorGated()) {
+            SampleCanLogic(currentItems, timestampNs);
+        } else if (currentItems.contains(personLabelId)) {
+            // 사람이 인식되었다면 사람 승차 확인, 사람이 인식되지 않았다면 beforeItems에 현재 상태 저장
             if (!personCheck) {
                 Log.d(TAG, "------ 사람의 승차를 확인했습니다 ------");
             }
@@ -561,173 +675,208 @@ public class CarLostDetectService extends Service {
             // 이전에 사람이 타고 있었고, 분실물 확인 기능을 활성화 했다면 분실물 확인
             if (personCheck && isActive) {
                 Log.d(TAG, "------ 사람의 하차를 확인했습니다. 놓고 내린 물건을 확인하겠습니다 ------");
-                afterList = items;
-
-                String lost = findLostItems(beforeList, afterList);
+                String lost = findLostItems(beforeItems, currentItems);
 
-                listener.setLostString(lost);
+                uiStateChannel.publishLost(lost);
 
                 if (!lost.isEmpty()) {
                     alertHelper.playTone(lost);
+                    reportLostItems(lost);
                 }
             }
 
             personCheck = false;
-            beforeList = items;
-            Log.d(TAG, "------ beforeList 갱신 ------");
+            beforeItems.copyFrom(currentItems);
+            Log.d(TAG, "------ beforeItems 갱신 ------");
         }
 
-        if (detectorStatus == ObjectDetectStatus.NOT_DETECT) {
-//            customBoxView.setResults(results, imageHeight, imageWidth);
-            listener.drawCustomBox(results, imageHeight, imageWidth);
+        // 처음 결과 또는 새로운 탐지 결과가 있을 때 최신 상태 갱신 (화면은 다음 vsync 에 마지막 상태만 받음)
+        if (detectorStatus == ObjectDetectStatus.NOT_DETECT || !results.isEmpty()) {
+            uiStateChannel.publishResults(results, imageHeight, imageWidth);
         }
         detectorStatus = ObjectDetectStatus.DETECT;
-
-        if (detectorStatus == ObjectDetectStatus.DETECT) {
-            if (!results.isEmpty()) {
-                // 새로운 탐지 결과가 있을 때 결과 Update
-                listener.drawCustomBox(results, imageHeight, imageWidth);
-                // CustomView 다시 그리기
-                listener.invalidateCustomBox();
-            }
-        }
     }
 
     /**
-     * CAN 통신이 물리면 사용할 로직(임시)
+     * 문 / 좌석 신호가 있을 때 사용하는 분실물 탐지 로직
+     * BoardingStatus 전이는 CaptureController 가 담당하며, 여기서는 사람 인식 결과를 넘기고
+     * 빈 차량 상태 저장 / 하차 후 분실물 확인만 수행
      *
      * @param items
+     * @param timestampNs 프레임 Timestamp (문 / 좌석 상태는 프레임 시점 기준으로 확인)
      */
-    private void SampleCanLogic(ArrayList<String> items) {
-        isHuman(items);
-
-        switch (status) {
-            case BEFORE:
-                if (door) {
-                    status = BoardingStatus.DURING;
-                } else {
-                    beforeList = items;
-                    Log.d(TAG, "------ beforeList 갱신 ------");
-                }
-                break;
-
-            case DURING:
-                if (!door && seat && human) {
-                    status = BoardingStatus.AFTER;
-                } else {
-                    if (!door) {
-                        beforeList = items;
-                        Log.d(TAG, "------ beforeList 갱신 ------");
-                        status = BoardingStatus.BEFORE;
-                    } else {
-                        status = BoardingStatus.DURING;
-                    }
-                }
-                break;
-
-            case AFTER:
-                if (door && !seat && !human) {
-                    Log.d(TAG, "------ 사람의 하차를 확인했습니다. 놓고 내린 물건을 확인하겠습니다 ------");
-                    afterList = items;
+    private void SampleCanLogic(LabelHistogram items, long timestampNs) {
+        captureController.setHuman(items.contains(personLabelId));
 
-                    String lost = findLostItems(beforeList, afterList);
+        if (captureController.consumeExit()) {
+            Log.d(TAG, "------ 사람의 하차를 확인했습니다. 놓고 내린 물건을 확인하겠습니다 ------");
+            String lost = findLostItems(beforeItems, items);
 
-                    listener.setLostString(lost);
-
-                    if (!lost.isEmpty() && isActive) {
-                        alertHelper.playTone(lost);
-                    }
-                    status = BoardingStatus.DURING;
-                } else {
-                    status = BoardingStatus.AFTER;
-                }
-                break;
+            uiStateChannel.publishLost(lost);
 
-            default:
-                break;
+            if (!lost.isEmpty()) {
+                reportLostItems(lost);
+            }
+            if (!lost.isEmpty() && isActive) {
+                alertHelper.playTone(lost);
+            }
+        } else if (captureController.getStatus() == BoardingStatus.BEFORE && !isDoor(timestampNs) && !isSeat(timestampNs)) {
+            // 문이 닫혀 있고 좌석이 비어 있던 프레임만 빈 차량 상태로 저장 (탑승자가 아직 인식되지 않은 경우 제외)
+            beforeItems.copyFrom(items);
+            Log.d(TAG, "------ beforeItems 갱신 ------");
         }
     }
 
     /**
-     * 사람이 인식되었는지 확인해 차량 안에 사람이 있는지 확인하는 함수
-     *
-     * @param items
+     * 카메라 / 탐지 동작 단계 적용 (Main Thread)
+     * 정지 시에도 VideoCapturer 는 유지하고 캡처만 멈춤
      */
-    private void isHuman(ArrayList<String> items) {
-        if (items.contains(getResources().getString(R.string.person_label))) {
-            human = true;
-        } else {
-            human = false;
+    private void applyCaptureMode(CaptureMode mode) {
+        if (videoCapturer == null || detectionScheduler == null) {
+            return;
+        }
+        try {
+            switch (mode) {
+                case OFF:
+                    if (isCapturing) {
+                        videoCapturer.stopCapture();
+                        isCapturing = false;
+                    }
+                    break;
+
+                case ACTIVE:
+                    startCapture(CAPTURE_FPS);
+                    detectionScheduler.setTargetFps(1000f / DETECT_INTERVAL);
+                    break;
+
+                case LOW_RATE:
+                    startCapture(CAPTURE_LOW_FPS);
+                    detectionScheduler.setTargetFps(1000f / DETECT_LOW_RATE_INTERVAL);
+                    break;
+
+                default:
+                    break;
+            }
+            Log.d(TAG, "applyCaptureMode: " + mode);
+        } catch (Exception e) {
+            Log.e(TAG, "캡처 상태 변경 중 오류 발생", e);
         }
     }
 
-    /**
-     * 차 문이 열렸는지 확인해 저장하는 함수 (미완성)
-     */
-    private void isDoor() {
-        // 문의 상태를 저장한 JSON 데이터를 받아 door 값을 바꿔주는 함수
+    private void startCapture(int fps) {
+        if (isCapturing) {
+            videoCapturer.changeCaptureFormat(CAPTURE_WIDTH, CAPTURE_HEIGHT, fps);
+        } else {
+            videoCapturer.startCapture(CAPTURE_WIDTH, CAPTURE_HEIGHT, fps);
+            isCapturing = true;
+        }
     }
 
     /**
-     * 시트에 사람이 앉아있는지 확인해 저장하는 함수 (미완성)
+     * 분실물 이벤트를 Journal 에 기록하고, 분실물이 보이는 최근 프레임으로 증거 사진 생성 (낮은 우선순위 Thread 에서 JPEG 변환)
      */
-    private void isSeat() {
-        // 시트의 상태를 저장한 JSON 데이터를 받아 seat 값을 바꿔주는 함수
+    private void reportLostItems(String lost) {
+        if (detectionJournal != null) {
+            detectionJournal.appendLost(System.currentTimeMillis(), lostItems);
+        }
+        if (evidenceEncoder == null) {
+            return;
+        }
+        evidenceEncoder.encode(lost, lostItems.labels(labelRegistry), (lostString, snapshots) -> {
+            Log.d(TAG, "증거 사진 준비됨 : " + lostString + " - " + snapshots.size() + "장");
+            showLostNotification(lostString, snapshots);
+        });
     }
 
     /**
-     * beforeList와 afterList를 비교해 두고 내린 물건을 찾아 알려주는 함수
+     * 분실물 알림 표시 (첫 번째 증거 사진을 함께 표시, Encoder Thread 에서 호출됨)
      */
-    private String findLostItems(ArrayList<String> beforeList, ArrayList<String> afterList) {
-        // afterList 에서 beforeList 에 있는 값들을 제거
-        for (String item : beforeList) {
-            afterList.remove(item);
+    private void showLostNotification(String lost, List<EvidenceEncoder.Snapshot> snapshots) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
+            Log.d(TAG, "알림 권한 없음 - 분실물 알림 생략");
+            return;
         }
-
-        StringBuilder lostItems = new StringBuilder();
-
-        // afterList 에 남아있는 물건들이 분실물
-        if (!afterList.isEmpty()) {
-            for (String item : afterList) {
-                lostItems.append(item).append(" ");
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, FOREGROUND_CHANNEL_ID)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle("분실물 감지")
+                .setContentText(lost)
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setAutoCancel(true);
+
+        if (!snapshots.isEmpty()) {
+            EvidenceEncoder.Snapshot snapshot = snapshots.get(0);
+            Bitmap bitmap = BitmapFactory.decodeByteArray(snapshot.jpeg, 0, snapshot.jpeg.length);
+            if (bitmap != null) {
+                // JPEG 은 센서 방향 그대로이므로 화면 방향으로 회전
+                if (snapshot.rotation % 360 != 0) {
+                    Matrix matrix = new Matrix();
+                    matrix.postRotate(snapshot.rotation);
+                    bitmap = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+                }
+                builder.setLargeIcon(bitmap)
+                        .setStyle(new NotificationCompat.BigPictureStyle().bigPicture(bitmap));
             }
-            Log.d(TAG, "두고 간 물건 : " + lostItems.toString());
         }
 
-        return lostItems.toString();
+        NotificationManagerCompat.from(this).notify(LOST_NOTIFICATION_ID, builder.build());
     }
 
-    public class DoorReceiver extends BroadcastReceiver {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            int doorSignal = intent.getIntExtra("msg_type", 0);
-            String txt = intent.getStringExtra("msg_data");
+    /**
+     * 기기에 기록된 탐지 결과 / 분실물 이벤트 조회 (진단용, Main Thread 에서 호출하지 않음)
+     */
+    public List<DetectionJournal.Entry> readJournal(long sinceMs) {
+        return DetectionJournal.read(new File(getFilesDir(), JOURNAL_DIR), sinceMs);
+    }
 
-            Log.d("Receiver", "ReceivedData : " + doorSignal + " :  " + txt);
-            // 카메라 상태 갱신
-//            settingCamera();
-        }
+    /**
+     * 프레임 Timestamp 시점에 차 문이 열려 있었는지 확인하는 함수 (0 이하면 현재 상태)
+     */
+    private boolean isDoor(long timestampNs) {
+        return canSignalIngestor != null && canSignalIngestor.isDoorOpen(timestampNs);
     }
 
-    public class SeatReceiver extends BroadcastReceiver {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-//            seatSignal = intent.getBooleanExtra("test", false);
-//            Log.d("Receiver", "ReceivedData : " + seatSignal);
-//             카메라 상태 갱신
-//            settingCamera();
+    /**
+     * 프레임 Timestamp 시점에 시트에 사람이 앉아 있었는지 확인하는 함수 (0 이하면 현재 상태)
+     */
+    private boolean isSeat(long timestampNs) {
+        return canSignalIngestor != null && canSignalIngestor.isSeatOccupied(timestampNs);
+    }
+
+    /**
+     * before 와 after 의 Label 별 개수를 비교해 두고 내린 물건을 찾아 알려주는 함수
+     * 입력 Histogram 은 수정하지 않으며, Label 수에 비례하는 시간만 걸린다
+     */
+    private String findLostItems(LabelHistogram before, LabelHistogram after) {
+        // after 에서 before 에 있던 개수만큼 제외하고 남은 물건들이 분실물
+        lostItems.setDifference(after, before);
+
+        lostBuilder.setLength(0);
+        if (!lostItems.isEmpty()) {
+            lostItems.appendLabels(lostBuilder, labelRegistry);
+            Log.d(TAG, "두고 간 물건 : " + lostBuilder);
         }
+
+        return lostBuilder.toString();
     }
 
-    @RequiresApi(api = Build.VERSION_CODES.O)
+    /**
+     * 문 / 좌석 신호 수집 시작 (Receiver 는 수집 Thread 에서 실행)
+     */
     private void enrollReceiver() {
-        doorBroadcastReceiver = new DoorReceiver();
-        seatBroadcastReceiver = new SeatReceiver();
-        IntentFilter doorIntentFilter = new IntentFilter("TEST1");
-        IntentFilter seatIntentFilter = new IntentFilter("TEST2");
-
-        registerReceiver(doorBroadcastReceiver, doorIntentFilter, Context.RECEIVER_EXPORTED);
-        registerReceiver(seatBroadcastReceiver, seatIntentFilter, Context.RECEIVER_EXPORTED);
+        canSignalIngestor = new CanSignalIngestor(CAN_DEBOUNCE_TIME, CAN_HISTORY_SIZE, (signal, value, timeNs) -> {
+            CaptureController controller = captureController;
+            if (controller == null) {
+                return;
+            }
+            // 카메라 상태 갱신
+            if (signal == CanSignalIngestor.SIGNAL_DOOR) {
+                controller.setDoor(value);
+            } else if (signal == CanSignalIngestor.SIGNAL_SEAT) {
+                controller.setSeat(value);
+            }
+        });
+        canSignalIngestor.register(this);
     }
 
     /**
@@ -744,14 +893,14 @@ public class CarLostDetectService extends Service {
                 videoSource = peerManager.getPeerConnectionFactory().createVideoSource(videoCapturer.isScreencast());
                 localVideoTrack = peerManager.getPeerConnectionFactory().createVideoTrack(LOCAL_VIDEO_TRACK_ID, videoSource);
 
-                localVideoTrack.addSink(videoSink);
+                localVideoTrack.addSink(detectionScheduler);
 
                 videoCapturer.initialize(surfaceTextureHelper, getApplicationContext(), videoSource.getCapturerObserver());
             }
 
             try {
                 videoCapturer.startCapture(CAPTURE_WIDTH, CAPTURE_HEIGHT, CAPTURE_FPS);
-                Log.d(TAG, "Before List" + beforeList.toString());
+                Log.d(TAG, "Before Items" + beforeItems);
             } catch (Exception e) {
                 Log.e(TAG, "비디오 캡처 시작 중 오류 발생", e);
             }
@@ -779,7 +928,7 @@ public class CarLostDetectService extends Service {
 
             if (localVideoTrack != null) {
                 localVideoTrack.setEnabled(false);
-                localVideoTrack.removeSink(videoSink);
+                localVideoTrack.removeSink(detectionScheduler);
                 localVideoTrack = null;
                 Log.d(TAG, "LocalVideoTrack 리소스 해제됨");
             }
@@ -817,6 +966,7 @@ public class CarLostDetectService extends Service {
                 int topicsLen = topics.length;
 
                 if (topic.equals("webrtc/" + myName + "/signal")) {
+                    detectionFrameEncoder.resetPeer(payload);
                     peerManager.createPeerConnection(payload);
                     peerManager.addTrack(payload, localVideoTrack);
                     peerManager.createDataChannel(payload);
@@ -836,7 +986,7 @@ public class CarLostDetectService extends Service {
                             peerManager.setRemoteDescription(peerId, payload, SessionDescription.Type.ANSWER);
                             break;
                         case "ice":
-                            // ICE 후보 수신 시 처리
+                            // ICE 후보 묶음 수신 시 처리
                             peerManager.addRemoteCandidate(peerId, payload);
                             break;
                     }
@@ -867,9 +1017,10 @@ public class CarLostDetectService extends Service {
         }
 
         @Override
-        public void onIceCandidate(String peerName, IceCandidate iceCandidate) {
+        public void onIceCandidates(String peerName, IceCandidateBatch batch) {
+            // 후보 묶음 하나를 MQTT 메시지 하나로 전송 (sdpMid / sdpMLineIndex / end 포함)
             String topic = "webrtc/" + peerName + "/" + myName + "/ice";
-            awsIotMqtt.publish(topic, iceCandidate.sdp);
+            awsIotMqtt.publish(topic, batch.toJson());
         }
 
         @Override
@@ -894,6 +1045,22 @@ public class CarLostDetectService extends Service {
             // 영상 수신 측 구현 부분
         }
 
+        @Override
+        public void onBinaryMessage(ByteBuffer data, String peerName) {
+            // 탐지 메시지 ACK
+            if (!detectionFrameEncoder.onMessage(peerName, data)) {
+                Log.d(TAG, "알 수 없는 Binary 메시지 : " + peerName);
+            }
+        }
+
+        @Override
+        public void onTelemetryMessage(ByteBuffer data, String peerName) {
+            // 탐지 메시지 ACK (Telemetry Channel 로 와도 최신 ACK 만 의미 있음)
+            if (!detectionFrameEncoder.onMessage(peerName, data)) {
+                Log.d(TAG, "알 수 없는 Telemetry 메시지 : " + peerName);
+            }
+        }
+
         @Override
         public void onTrack(RtpTransceiver transceiver, String peerName) {
             // 영상 수신 측 구현 부분
@@ -911,46 +1078,46 @@ public class CarLostDetectService extends Service {
         }
 
         @Override
-        public void onResults(@Nullable List<Detection> results, long inferenceTime, int imageHeight, int imageWidth) {
-            if (!isProcessing) {
-                isProcessing = true;
-                executorService.submit(() -> {
-                    try {
-                        Log.d(TAG, "onResults:" +results + "imageHeight: " + imageHeight + "imageWidth: " + imageWidth);
-                        // 리스트 필터링
-                        List<Detection> filteredResults = filterDetections(results, excludeLabels);
-
-                        // 필터링 된 리스트 전달
-
-                        processResults(
-                               results,
-                                imageHeight,
-                                imageWidth
-                        );
-
-                        // 데이터 보내기
-                        if (objectLabels.isEmpty()) {
-                            objectLabels = getResources().getString(R.string.no_label);
-                        }
-                        // sendDataToService(objectLabels);
-                        if (peerManager != null) {
-                            peerManager.sendData(objectLabels);
-                        }
-
-                        objectLabels = "";
-
-                        // 딜레이 처리
-                        Thread.sleep(DETECT_INTERVAL);
-                    } catch (InterruptedException e) {
-                        // 인터럽트 예외 처리: 현재 스레드를 다시 인터럽트 상태로 설정
-                        Thread.currentThread().interrupt();
-                        Log.e(TAG, "Thread interrupted during sleep", e);
-                    } catch (Exception e) {
-                        Log.e(TAG, "오류 발생", e);
-                    } finally {
-                        isProcessing = false;
-                    }
-                });
+        public void onResults(@Nullable List<Detection> results, long inferenceTime, int imageHeight, int imageWidth,
+                              long timestampNs) {
+            // DetectionPipeline 의 후처리 Thread 에서 호출되므로 순서대로 바로 처리
+            try {
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "onResults:" + results + "imageHeight: " + imageHeight + "imageWidth: " + imageWidth);
+                }
+                // 리스트 필터링 (이후 단계는 모두 제외 Label 이 빠진 결과만 사용)
+                List<Detection> filteredResults = filterDetections(results, excludeLabelIds);
+
+                // 보관 중인 프레임에 탐지 결과 연결
+                EvidenceFrameRing frameRing = evidenceFrameRing;
+                if (frameRing != null) {
+                    frameRing.attachResults(timestampNs, filteredResults);
+                }
+                DetectionJournal journal = detectionJournal;
+                if (journal != null) {
+                    journal.appendFrame(System.currentTimeMillis(), filteredResults, imageWidth, imageHeight);
+                }
+
+                // 필터링 된 리스트 전달
+                processResults(
+                        filteredResults,
+                        imageHeight,
+                        imageWidth,
+                        timestampNs
+                );
+
+                // 데이터 보내기 (바뀐 물체만 Binary 로 전송, 빈 결과는 count 0)
+                // (processResults 에서 갱신한 Track ID 로 물체를 구분)
+                PeerManager manager = peerManager;
+                if (manager != null) {
+                    objectTracker.copyTrackIds(resultTrackIds);
+                    detectionFrameEncoder.publish(filteredResults, resultTrackIds, imageWidth, imageHeight,
+                            manager.getOpenDataChannels(), (peerName, message, state) -> state
+                                    ? manager.sendState(peerName, message)
+                                    : manager.sendData(peerName, message));
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "오류 발생", e);
             }
         }
 
@@ -0,0 +1,377 @@
+package kr.co.edoubles.carlostdetect.service;
+
+import android.graphics.RectF;
+import android.util.Log;
+
+import org.tensorflow.lite.task.vision.detector.Detection;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import kr.co.edoubles.carlostdetect.detect.LabelRegistry;
+
+/**
+ * 탐지 결과를 Data Channel 로 보내기 위한 Binary 메시지 Encoder
+ * <p>
+ * 물체는 ObjectTracker 의 Track ID 로 구분한다. 수신 측 (Peer) 별로 보낸 상태를 Sequence 번호와 함께 보관하고,
+ * 수신 측이 ACK 한 마지막 상태에 대해 바뀌거나 새로 생긴 물체, 사라진 물체의 ID 만 보낸다 (Delta).
+ * ACK 가 없거나, ACK 한 상태가 이미 기록에서 밀려났거나, keyframeInterval 번 동안 Keyframe 이 없었으면
+ * 전체 상태 (Keyframe) 를 보낸다. 마지막으로 보낸 상태와 같으면 아무것도 보내지 않는다.
+ * <p>
+ * KEY / DELTA 는 순서 / 재전송이 없는 Telemetry Channel 로, LABEL 은 Control Channel 로 보낸다.
+ * 따라서 수신 측은 이전 seq 의 메시지, base 상태를 모르는 DELTA 는 버리고 (다음 Keyframe 을 기다림),
+ * 아직 LABEL 을 받지 못한 Label ID 도 처리할 수 있어야 한다 (LABEL 이 늦게 도착할 수 있음).
+ * 보낸 상태가 유실되었을 수 있으므로, 같은 상태라도 ACK 가 없으면 RESEND_INTERVAL 프레임마다 다시 보낸다.
+ * <p>
+ * 메시지 형식 (Little endian, Box 는 0~65535 정규화, Score 는 0~255)
+ * <ul>
+ * <li>KEY : type(1) seq(4) count(1) + [trackId(2) labelId(2) score(1) left(2) top(2) right(2) bottom(2)] * count</li>
+ * <li>DELTA : type(1) seq(4) baseSeq(4) changed(1) removed(1) + item(13) * changed + trackId(2) * removed
+ * - baseSeq 상태에서 같은 trackId 의 항목을 바꾸거나 추가하고, removed 의 trackId 항목을 지움</li>
+ * <li>LABEL : type(1) labelId(2) length(1) utf8 - 해당 Peer 에 처음 사용되는 Label ID 앞에 보냄</li>
+ * <li>ACK (수신 측 -> 기기) : type(1) seq(4)</li>
+ * </ul>
+ */
+public class DetectionFrameEncoder {
+
+    private static final String TAG = "DetectionFrameEncoder";
+
+    public static final byte TYPE_KEY = 1;
+    public static final byte TYPE_DELTA = 2;
+    public static final byte TYPE_LABEL = 3;
+    public static final byte TYPE_ACK = 4;
+
+    public static final int MAX_ITEMS = 64;
+
+    private static final int ITEM_SIZE = 13;
+    private static final int HISTORY_SIZE = 16;
+    private static final int RESEND_INTERVAL = 4;
+    private static final int MAX_MESSAGE_SIZE = 11 + MAX_ITEMS * (ITEM_SIZE + 2);
+    private static final int MAX_LABEL_MESSAGE_SIZE = 4 + 255;
+
+    public interface Sink {
+        /**
+         * Peer 하나에 메시지 전송 (message 는 호출이 끝나면 재사용됨)
+         *
+         * @param state 최신 값만 의미 있는 상태 메시지 (Key / Delta) 면 true - 혼잡 시 이전 값을 버려도 됨
+         * @return 전송 (또는 전송 대기열에 보관) 했으면 true
+         */
+        boolean send(String peerName, ByteBuffer message, boolean state);
+    }
+
+    /**
+     * 한 Sequence 에서 보낸 상태 (id : trackId, meta : labelId << 8 | score, box : left << 48 | top << 32 | right << 16 | bottom)
+     */
+    private static final class State {
+        int seq = -1;
+        int count;
+        final int[] id = new int[MAX_ITEMS];
+        final int[] meta = new int[MAX_ITEMS];
+        final long[] box = new long[MAX_ITEMS];
+
+        int indexOf(int trackId) {
+            for (int i = 0; i < count; i++) {
+                if (id[i] == trackId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Peer 별 전송 상태
+     */
+    private static final class PeerState {
+        final State[] history = new State[HISTORY_SIZE];
+        final BitSet sentLabels = new BitSet();
+        int seq = -1;
+        int ackedSeq = -1;
+        int framesSinceKey = 0;
+        int framesSinceSent = 0;
+
+        PeerState() {
+            for (int i = 0; i < HISTORY_SIZE; i++) {
+                history[i] = new State();
+            }
+        }
+
+        State find(int seq) {
+            State state = history[seq & (HISTORY_SIZE - 1)];
+            return seq >= 0 && state.seq == seq ? state : null;
+        }
+    }
+
+    private final LabelRegistry labelRegistry;
+    private final int keyframeInterval;
+    private final int boxTolerance;
+    private final Map<String, PeerState> peers = new HashMap<>();
+
+    // publish 에서만 사용하는 버퍼
+    private final State current = new State();
+    private final ByteBuffer message = ByteBuffer.allocate(MAX_MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer labelMessage = ByteBuffer.allocate(MAX_LABEL_MESSAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    // 통계 값들
+    private long keyframes = 0;
+    private long deltas = 0;
+    private long skipped = 0;
+    private long sentBytes = 0;
+
+    /**
+     * @param keyframeInterval Keyframe 없이 보낼 수 있는 최대 프레임 수
+     * @param boxTolerance     같은 Box 로 볼 좌표 차이 (0~1 정규화 기준)
+     */
+    public DetectionFrameEncoder(LabelRegistry labelRegistry, int keyframeInterval, float boxTolerance) {
+        this.labelRegistry = labelRegistry;
+        this.keyframeInterval = keyframeInterval;
+        this.boxTolerance = Math.round(boxTolerance * 65535);
+    }
+
+    /**
+     * 탐지 결과를 열린 Peer 들에 전송 (후처리 Thread 에서 호출)
+     *
+     * @param trackIds  results 순서대로 연결된 Track ID (ObjectTracker.copyTrackIds)
+     * @param peerNames Data Channel 이 열린 Peer 목록 (목록에 없는 Peer 의 상태는 삭제)
+     */
+    public synchronized void publish(List<Detection> results, int[] trackIds, int imageWidth, int imageHeight,
+                                     Collection<String> peerNames, Sink sink) {
+        quantize(results, trackIds, imageWidth, imageHeight, current);
+
+        Iterator<Map.Entry<String, PeerState>> iterator = peers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (!peerNames.contains(iterator.next().getKey())) {
+                iterator.remove();
+            }
+        }
+
+        for (String peerName : peerNames) {
+            PeerState peer = peers.get(peerName);
+            if (peer == null) {
+                peer = new PeerState();
+                peers.put(peerName, peer);
+            }
+            publish(peerName, peer, sink);
+        }
+    }
+
+    private void publish(String peerName, PeerState peer, Sink sink) {
+        State last = peer.find(peer.seq);
+        boolean acked = peer.ackedSeq == peer.seq;
+        if (last != null && peer.framesSinceKey < keyframeInterval
+                && (acked || peer.framesSinceSent < RESEND_INTERVAL) && same(current, last)) {
+            peer.framesSinceKey++;
+            peer.framesSinceSent++;
+            skipped++;
+            return;
+        }
+        peer.framesSinceSent = 0;
+
+        int seq = peer.seq + 1 < 0 ? 0 : peer.seq + 1;
+        State base = peer.framesSinceKey < keyframeInterval ? peer.find(peer.ackedSeq) : null;
+        if (base != null && seq - base.seq >= HISTORY_SIZE) {
+            // 이번 상태가 base 자리에 기록되므로 Keyframe 으로 보냄
+            base = null;
+        }
+        State sent = peer.history[seq & (HISTORY_SIZE - 1)];
+
+        sendLabels(peerName, peer, sink);
+
+        message.clear();
+        if (base == null) {
+            message.put(TYPE_KEY);
+            message.putInt(seq);
+            message.put((byte) current.count);
+            for (int i = 0; i < current.count; i++) {
+                putItem(current.id[i], current.meta[i], current.box[i]);
+            }
+            copy(current, sent);
+            peer.framesSinceKey = 0;
+            keyframes++;
+        } else {
+            message.put(TYPE_DELTA);
+            message.putInt(seq);
+            message.putInt(base.seq);
+            int countPosition = message.position();
+            message.put((byte) 0);
+            message.put((byte) 0);
+
+            // 같은 Track 이 허용 범위 안에서 그대로면 base 값을 유지해 수신 측과 같은 상태를 기록
+            int changed = 0;
+            for (int i = 0; i < current.count; i++) {
+                int j = base.indexOf(current.id[i]);
+                sent.id[i] = current.id[i];
+                if (j >= 0 && same(current, i, base, j)) {
+                    sent.meta[i] = base.meta[j];
+                    sent.box[i] = base.box[j];
+                } else {
+                    putItem(current.id[i], current.meta[i], current.box[i]);
+                    sent.meta[i] = current.meta[i];
+                    sent.box[i] = current.box[i];
+                    changed++;
+                }
+            }
+            // base 에는 있었지만 사라진 Track
+            int removed = 0;
+            for (int j = 0; j < base.count; j++) {
+                if (current.indexOf(base.id[j]) < 0) {
+                    message.putShort((short) base.id[j]);
+                    removed++;
+                }
+            }
+            message.put(countPosition, (byte) changed);
+            message.put(countPosition + 1, (byte) removed);
+            sent.count = current.count;
+            peer.framesSinceKey++;
+            deltas++;
+        }
+        sent.seq = seq;
+        peer.seq = seq;
+
+        message.flip();
+        int length = message.remaining();
+        if (sink.send(peerName, message, true)) {
+            sentBytes += length;
+        }
+    }
+
+    /**
+     * 해당 Peer 에 아직 보내지 않은 Label 이름 전송
+     */
+    private void sendLabels(String peerName, PeerState peer, Sink sink) {
+        for (int i = 0; i < current.count; i++) {
+            int labelId = current.meta[i] >>> 8;
+            if (peer.sentLabels.get(labelId)) {
+                continue;
+            }
+            byte[] name = labelRegistry.labelOf(labelId).getBytes(StandardCharsets.UTF_8);
+            int nameLength = Math.min(name.length, 255);
+
+            labelMessage.clear();
+            labelMessage.put(TYPE_LABEL);
+            labelMessage.putShort((short) labelId);
+            labelMessage.put((byte) nameLength);
+            labelMessage.put(name, 0, nameLength);
+            labelMessage.flip();
+            int length = labelMessage.remaining();
+            // 보내지 못한 Label 은 다음 프레임에 다시 보냄
+            if (sink.send(peerName, labelMessage, false)) {
+                sentBytes += length;
+                peer.sentLabels.set(labelId);
+            }
+        }
+    }
+
+    /**
+     * 수신 측 ACK 처리 (WebRTC Thread 에서 호출)
+     *
+     * @return ACK 메시지면 true
+     */
+    public synchronized boolean onMessage(String peerName, ByteBuffer data) {
+        if (data.remaining() < 5) {
+            return false;
+        }
+        ByteBuffer buffer = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.get() != TYPE_ACK) {
+            return false;
+        }
+        int seq = buffer.getInt();
+        PeerState peer = peers.get(peerName);
+        if (peer != null && seq <= peer.seq && seq > peer.ackedSeq && peer.find(seq) != null) {
+            peer.ackedSeq = seq;
+        }
+        return true;
+    }
+
+    /**
+     * Peer 재연결 등으로 수신 측 상태가 초기화되었을 때 호출 (다음 전송은 Keyframe)
+     */
+    public synchronized void resetPeer(String peerName) {
+        peers.remove(peerName);
+    }
+
+    public synchronized void clear() {
+        peers.clear();
+        Log.d(TAG, "전송 통계 - key: " + keyframes + ", delta: " + deltas + ", skipped: " + skipped
+                + ", bytes: " + sentBytes);
+    }
+
+    private void putItem(int trackId, int meta, long box) {
+        message.putShort((short) trackId);
+        message.putShort((short) (meta >>> 8));
+        message.put((byte) meta);
+        message.putShort((short) (box >>> 48));
+        message.putShort((short) (box >>> 32));
+        message.putShort((short) (box >>> 16));
+        message.putShort((short) box);
+    }
+
+    private void quantize(List<Detection> results, int[] trackIds, int imageWidth, int imageHeight, State state) {
+        int count = results == null ? 0 : Math.min(Math.min(results.size(), trackIds.length), MAX_ITEMS);
+        for (int i = 0; i < count; i++) {
+            Detection detection = results.get(i);
+            state.id[i] = trackIds[i] & 0xFFFF;
+            RectF box = detection.getBoundingBox();
+            int labelId = labelRegistry.idOf(detection.getCategories().get(0).getLabel());
+            int score = quantize(detection.getCategories().get(0).getScore(), 1f, 255);
+            state.meta[i] = (labelId & 0xFFFF) << 8 | score;
+            state.box[i] = (long) quantize(box.left, imageWidth, 65535) << 48
+                    | (long) quantize(box.top, imageHeight, 65535) << 32
+                    | (long) quantize(box.right, imageWidth, 65535) << 16
+                    | quantize(box.bottom, imageHeight, 65535);
+        }
+        state.count = count;
+    }
+
+    private static int quantize(float value, float range, int max) {
+        if (range <= 0) {
+            return 0;
+        }
+        return Math.max(0, Math.min(max, Math.round(value / range * max)));
+    }
+
+    private boolean same(State a, State b) {
+        if (a.count != b.count) {
+            return false;
+        }
+        for (int i = 0; i < a.count; i++) {
+            int j = b.indexOf(a.id[i]);
+            if (j < 0 || !same(a, i, b, j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Label 이 같고 Box 좌표 차이가 모두 허용 범위 안이면 같은 항목 (Score 변화는 무시)
+     */
+    private boolean same(State a, int i, State b, int j) {
+        if (a.meta[i] >>> 8 != b.meta[j] >>> 8) {
+            return false;
+        }
+        long boxA = a.box[i];
+        long boxB = b.box[j];
+        for (int shift = 0; shift < 64; shift += 16) {
+            int diff = (int) ((boxA >>> shift) & 0xFFFF) - (int) ((boxB >>> shift) & 0xFFFF);
+            if (Math.abs(diff) > boxTolerance) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void copy(State from, State to) {
+        System.arraycopy(from.id, 0, to.id, 0, from.count);
+        System.arraycopy(from.meta, 0, to.meta, 0, from.count);
+        System.arraycopy(from.box, 0, to.box, 0, from.count);
+        to.count = from.count;
+    }
+}
@@ -0,0 +1,450 @@
+package kr.co.edoubles.carlostdetect.service;
+
+import android.graphics.RectF;
+import android.os.Process;
+import android.util.Log;
+
+import org.tensorflow.lite.task.vision.detector.Detection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import kr.co.edoubles.carlostdetect.detect.LabelHistogram;
+import kr.co.edoubles.carlostdetect.detect.LabelRegistry;
+
+/**
+ * 탐지 결과 / 분실물 이벤트를 기기에 남기는 Append-only Binary Journal
+ * <p>
+ * 고정 크기 Segment 파일을 MappedByteBuffer 로 열어 순서대로 기록하고, 가득 차면 다음 Segment 로 넘어간다.
+ * 다시 시작하면 마지막 Segment 의 남은 공간부터 이어서 기록한다. 오래된 Segment 는 최대 개수를 넘으면 삭제된다.
+ * 후처리 Thread 는 미리 만들어 둔 Record 버퍼에 값을 채워 Queue 에 넣기만 하고 (버퍼가 없으면 버림),
+ * 파일 기록 / Segment 교체는 Journal Thread 에서 수행하므로 탐지 Thread 가 멈추지 않는다.
+ * <p>
+ * Record 형식 (Little endian) : type(1) length(2) timeMs(8) payload
+ * <ul>
+ * <li>FRAME : count(1) + [labelId(2) score(1) left(2) top(2) right(2) bottom(2)] * count (Box 는 0~65535 정규화)</li>
+ * <li>LOST : count(1) + [labelId(2) count(1)] * count</li>
+ * <li>LABEL : labelId(2) length(1) utf8 - Segment 안에서 처음 사용되는 Label ID 앞에 기록</li>
+ * </ul>
+ * type 이 0 이면 Segment 의 끝이다.
+ */
+public class DetectionJournal {
+
+    private static final String TAG = "DetectionJournal";
+
+    static final byte TYPE_END = 0;
+    static final byte TYPE_FRAME = 1;
+    static final byte TYPE_LOST = 2;
+    static final byte TYPE_LABEL = 3;
+
+    private static final int HEADER_SIZE = 11;
+    private static final int FRAME_ITEM_SIZE = 11;
+    private static final int LOST_ITEM_SIZE = 3;
+    private static final int MAX_ITEMS = 64;
+    private static final int MAX_RECORD_SIZE = HEADER_SIZE + 1 + MAX_ITEMS * FRAME_ITEM_SIZE;
+    private static final int MAX_LABEL_RECORD_SIZE = HEADER_SIZE + 3 + 255;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+
+    /**
+     * 후처리 Thread 에서 채우고 Journal Thread 에서 기록하는 Record 버퍼
+     */
+    private static final class Record {
+        final ByteBuffer data = ByteBuffer.allocate(MAX_RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private final File directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final LabelRegistry labelRegistry;
+
+    // 후처리 -> Journal / Journal -> 후처리
+    private final SpscQueue<Record> pendingRecords;
+    private final SpscQueue<Record> freeRecords;
+    private final Thread journalThread;
+    private volatile boolean running = true;
+
+    // Journal Thread 에서만 사용하는 값들
+    private MappedByteBuffer segment;
+    private long segmentIndex = -1;
+    private final BitSet writtenLabels = new BitSet();
+
+    // 통계 값들
+    private final AtomicLong writtenRecords = new AtomicLong();
+    private final AtomicLong droppedRecords = new AtomicLong();
+
+    public DetectionJournal(File directory, int segmentSize, int maxSegments, int queueSize, LabelRegistry labelRegistry) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        this.labelRegistry = labelRegistry;
+
+        pendingRecords = new SpscQueue<>(queueSize);
+        freeRecords = new SpscQueue<>(queueSize);
+        for (int i = 0; i < freeRecords.capacity(); i++) {
+            freeRecords.offer(new Record());
+        }
+
+        journalThread = new Thread(this::journalLoop, "JournalThread");
+        journalThread.start();
+    }
+
+    /**
+     * 탐지 결과 기록 (후처리 Thread 에서 호출, 대기하지 않음)
+     */
+    public void appendFrame(long timeMs, List<Detection> results, int imageWidth, int imageHeight) {
+        Record record = freeRecords.poll();
+        if (record == null) {
+            droppedRecords.incrementAndGet();
+            return;
+        }
+
+        int count = results == null ? 0 : Math.min(results.size(), MAX_ITEMS);
+        ByteBuffer data = beginRecord(record, TYPE_FRAME, timeMs);
+        data.put((byte) count);
+        for (int i = 0; i < count; i++) {
+            Detection detection = results.get(i);
+            RectF box = detection.getBoundingBox();
+            data.putShort((short) labelRegistry.idOf(detection.getCategories().get(0).getLabel()));
+            data.put((byte) quantize(detection.getCategories().get(0).getScore(), 1f, 255));
+            data.putShort((short) quantize(box.left, imageWidth, 65535));
+            data.putShort((short) quantize(box.top, imageHeight, 65535));
+            data.putShort((short) quantize(box.right, imageWidth, 65535));
+            data.putShort((short) quantize(box.bottom, imageHeight, 65535));
+        }
+        submit(record);
+    }
+
+    /**
+     * 분실물 이벤트 기록 (Label 별 개수)
+     */
+    public void appendLost(long timeMs, LabelHistogram lostItems) {
+        Record record = freeRecords.poll();
+        if (record == null) {
+            droppedRecords.incrementAndGet();
+            return;
+        }
+
+        ByteBuffer data = beginRecord(record, TYPE_LOST, timeMs);
+        int countPosition = data.position();
+        data.put((byte) 0);
+        int count = 0;
+        for (int id = 0; id < labelRegistry.getSize() && count < MAX_ITEMS; id++) {
+            int items = lostItems.count(id);
+            if (items > 0) {
+                data.putShort((short) id);
+                data.put((byte) Math.min(items, 255));
+                count++;
+            }
+        }
+        data.put(countPosition, (byte) count);
+        submit(record);
+    }
+
+    private static ByteBuffer beginRecord(Record record, byte type, long timeMs) {
+        ByteBuffer data = record.data;
+        data.clear();
+        data.put(type);
+        data.putShort((short) 0);
+        data.putLong(timeMs);
+        return data;
+    }
+
+    private void submit(Record record) {
+        ByteBuffer data = record.data;
+        data.putShort(1, (short) data.position());
+        data.flip();
+        pendingRecords.offer(record);
+        LockSupport.unpark(journalThread);
+    }
+
+    private static int quantize(float value, float range, int max) {
+        if (range <= 0) {
+            return 0;
+        }
+        return Math.max(0, Math.min(max, Math.round(value / range * max)));
+    }
+
+    private void journalLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        while (true) {
+            Record record = pendingRecords.poll();
+            if (record == null) {
+                if (!running) {
+                    break;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+
+            try {
+                write(record.data);
+                writtenRecords.incrementAndGet();
+            } catch (IOException e) {
+                Log.e(TAG, "Journal 기록 중 오류 발생", e);
+            } finally {
+                freeRecords.offer(record);
+            }
+        }
+
+        if (segment != null) {
+            segment.force();
+            segment = null;
+        }
+    }
+
+    /**
+     * Journal Thread 에서 Record 기록, 처음 사용하는 Label 은 이름을 먼저 기록
+     */
+    private void write(ByteBuffer data) throws IOException {
+        byte type = data.get(0);
+        long timeMs = data.getLong(3);
+        int count = data.get(HEADER_SIZE) & 0xFF;
+        int itemSize = type == TYPE_FRAME ? FRAME_ITEM_SIZE : LOST_ITEM_SIZE;
+
+        ensureSpace(data.remaining() + count * MAX_LABEL_RECORD_SIZE);
+        for (int i = 0; i < count; i++) {
+            int labelId = data.getShort(HEADER_SIZE + 1 + i * itemSize) & 0xFFFF;
+            if (!writtenLabels.get(labelId)) {
+                writeLabel(labelId, timeMs);
+            }
+        }
+        segment.put(data);
+    }
+
+    private void writeLabel(int labelId, long timeMs) {
+        byte[] name = labelRegistry.labelOf(labelId).getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(name.length, 255);
+        segment.put(TYPE_LABEL);
+        segment.putShort((short) (HEADER_SIZE + 3 + length));
+        segment.putLong(timeMs);
+        segment.putShort((short) labelId);
+        segment.put((byte) length);
+        segment.put(name, 0, length);
+        writtenLabels.set(labelId);
+    }
+
+    /**
+     * 남은 공간이 부족하면 다음 Segment 로 교체 (끝 표시용 1 byte 는 항상 남김)
+     * 처음 호출될 때는 이전 실행의 마지막 Segment 에 공간이 남아 있으면 이어서 기록
+     */
+    private void ensureSpace(int size) throws IOException {
+        if (segment != null && segment.remaining() > size) {
+            return;
+        }
+        if (segment != null) {
+            segment.force();
+        }
+
+        if (segmentIndex < 0) {
+            if (!directory.exists() && !directory.mkdirs()) {
+                throw new IOException("Journal 폴더 생성 실패 : " + directory);
+            }
+            long[] indexes = segmentIndexes(directory);
+            if (indexes.length > 0) {
+                segmentIndex = indexes[indexes.length - 1];
+                openSegment(true);
+                if (segment.remaining() > size) {
+                    Log.d(TAG, "이어서 기록 : " + SEGMENT_PREFIX + segmentIndex + SEGMENT_SUFFIX + " @" + segment.position());
+                    return;
+                }
+                segmentIndex++;
+            } else {
+                segmentIndex = 0;
+            }
+        } else {
+            segmentIndex++;
+        }
+
+        openSegment(false);
+        Log.d(TAG, "새 Segment : " + SEGMENT_PREFIX + segmentIndex + SEGMENT_SUFFIX);
+
+        pruneSegments();
+    }
+
+    /**
+     * segmentIndex 의 Segment 를 Mapping (resume 이면 기록된 Record 뒤로 이동)
+     * 모델이 바뀌면 Label ID 가 달라질 수 있으므로 이어서 기록할 때도 Label 이름은 다시 기록한다
+     */
+    private void openSegment(boolean resume) throws IOException {
+        File file = new File(directory, SEGMENT_PREFIX + segmentIndex + SEGMENT_SUFFIX);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            long size = resume ? Math.max(segmentSize, channel.size()) : segmentSize;
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        if (resume) {
+            segment.position(findEnd(segment));
+        }
+        writtenLabels.clear();
+    }
+
+    /**
+     * Segment 에서 마지막 Record 의 끝 위치 (readSegment 와 같은 기준으로 끝을 판단)
+     */
+    static int findEnd(ByteBuffer buffer) {
+        int position = 0;
+        while (buffer.limit() - position >= HEADER_SIZE) {
+            byte type = buffer.get(position);
+            int length = buffer.getShort(position + 1) & 0xFFFF;
+            if (type == TYPE_END || length < HEADER_SIZE || position + length > buffer.limit()) {
+                break;
+            }
+            position += length;
+        }
+        return position;
+    }
+
+    private void pruneSegments() {
+        long[] indexes = segmentIndexes(directory);
+        for (int i = 0; i < indexes.length - maxSegments; i++) {
+            File file = new File(directory, SEGMENT_PREFIX + indexes[i] + SEGMENT_SUFFIX);
+            if (!file.delete()) {
+                Log.e(TAG, "Segment 삭제 실패 : " + file.getName());
+            }
+        }
+    }
+
+    private static long[] segmentIndexes(File directory) {
+        String[] names = directory.list();
+        if (names == null) {
+            return new long[0];
+        }
+        long[] indexes = new long[names.length];
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    indexes[count++] = Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    Log.e(TAG, "알 수 없는 Segment : " + name);
+                }
+            }
+        }
+        indexes = Arrays.copyOf(indexes, count);
+        Arrays.sort(indexes);
+        return indexes;
+    }
+
+    public long getWrittenRecords() {
+        return writtenRecords.get();
+    }
+
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    /**
+     * 남은 Record 를 모두 기록한 뒤 Journal Thread 종료
+     */
+    public void release() {
+        running = false;
+        LockSupport.unpark(journalThread);
+        try {
+            // 남은 Record 기록 / force 가 끝나기 전에 Mapping 을 놓지 않도록 끝날 때까지 대기
+            journalThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Log.d(TAG, "DetectionJournal 종료됨 - written: " + writtenRecords.get() + ", dropped: " + droppedRecords.get());
+    }
+
+    /**
+     * Journal 에서 읽은 Record 하나
+     */
+    public static class Entry {
+        public final byte type;
+        public final long timeMs;
+        public final List<String> labels = new ArrayList<>();
+        // FRAME : 점수, LOST : 개수
+        public final List<Float> values = new ArrayList<>();
+        // FRAME : 정규화된 Box (0~1)
+        public final List<RectF> boxes = new ArrayList<>();
+
+        Entry(byte type, long timeMs) {
+            this.type = type;
+            this.timeMs = timeMs;
+        }
+
+        public boolean isLostEvent() {
+            return type == TYPE_LOST;
+        }
+    }
+
+    /**
+     * 기록된 Segment 를 오래된 순서로 읽음 (진단 / 분석용, 어느 Thread 에서나 호출 가능)
+     *
+     * @param sinceMs 이 시각 이후의 Record 만 반환
+     */
+    public static List<Entry> read(File directory, long sinceMs) {
+        List<Entry> entries = new ArrayList<>();
+        for (long index : segmentIndexes(directory)) {
+            File file = new File(directory, SEGMENT_PREFIX + index + SEGMENT_SUFFIX);
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                readSegment(buffer, sinceMs, entries);
+            } catch (IOException e) {
+                Log.e(TAG, "Segment 읽기 실패 : " + file.getName(), e);
+            }
+        }
+        return entries;
+    }
+
+    private static void readSegment(ByteBuffer buffer, long sinceMs, List<Entry> entries) {
+        List<String> names = new ArrayList<>();
+
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int start = buffer.position();
+            byte type = buffer.get();
+            int length = buffer.getShort() & 0xFFFF;
+            if (type == TYPE_END || length < HEADER_SIZE || start + length > buffer.limit()) {
+                break;
+            }
+            long timeMs = buffer.getLong();
+
+            if (type == TYPE_LABEL) {
+                int labelId = buffer.getShort() & 0xFFFF;
+                byte[] name = new byte[buffer.get() & 0xFF];
+                buffer.get(name);
+                while (names.size() <= labelId) {
+                    names.add(null);
+                }
+                names.set(labelId, new String(name, StandardCharsets.UTF_8));
+            } else if (timeMs >= sinceMs && (type == TYPE_FRAME || type == TYPE_LOST)) {
+                Entry entry = new Entry(type, timeMs);
+                int count = buffer.get() & 0xFF;
+                for (int i = 0; i < count; i++) {
+                    int labelId = buffer.getShort() & 0xFFFF;
+                    entry.labels.add(labelId < names.size() ? names.get(labelId) : String.valueOf(labelId));
+                    if (type == TYPE_FRAME) {
+                        entry.values.add((buffer.get() & 0xFF) / 255f);
+                        entry.boxes.add(new RectF(
+                                (buffer.getShort() & 0xFFFF) / 65535f,
+                                (buffer.getShort() & 0xFFFF) / 65535f,
+                                (buffer.getShort() & 0xFFFF) / 65535f,
+                                (buffer.getShort() & 0xFFFF) / 65535f));
+                    } else {
+                        entry.values.add((float) (buffer.get() & 0xFF));
+                    }
+                }
+                entries.add(entry);
+            }
+            buffer.position(start + length);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package kr.co.edoubles.carlostdetect.service;
+
+import android.os.Process;
+import android.util.Log;
+
+import org.webrtc.VideoFrame;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import kr.co.edoubles.carlostdetect.detect.DetectionJob;
+import kr.co.edoubles.carlostdetect.detect.FrameBufferPool;
+import kr.co.edoubles.carlostdetect.detect.ObjectDetectorHelper;
+
+/**
+ * 변환 -> 추론 -> 후처리 3단계 탐지 Pipeline
+ * <p>
+ * 변환은 DetectionScheduler Thread 에서, 추론과 후처리는 각각 전용 Thread 에서 실행되어
+ * 프레임 N 을 추론하는 동안 프레임 N+1 을 변환하고 프레임 N-1 을 후처리할 수 있다.
+ * 단계 사이는 SPSC Queue 로 작업 (DetectionJob) 만 넘기며, 작업은 단계 수 만큼의 bank 별로 미리 만들어
+ * 순환시키므로 (free -> infer -> post -> free) 세 단계가 동시에 서로 다른 입력 버퍼를 쓸 수 있다.
+ * 비어 있는 작업이 없으면 (추론이 밀린 경우) Scheduler 가 새 프레임을 I420 으로 읽어오기 전에 버린다.
+ */
+public class DetectionPipeline implements DetectionScheduler.FrameProcessor {
+
+    private static final String TAG = "DetectionPipeline";
+
+    private final ObjectDetectorHelper detectorHelper;
+
+    // 후처리 -> 변환 / 변환 -> 추론 / 추론 -> 후처리
+    private final SpscQueue<DetectionJob> freeJobs;
+    private final SpscQueue<DetectionJob> inferQueue;
+    private final SpscQueue<DetectionJob> postQueue;
+
+    // 추론 Thread 에서 실행할 작업 (모델 준비, Benchmark 등)
+    private final ConcurrentLinkedQueue<Runnable> inferTasks = new ConcurrentLinkedQueue<>();
+    // 모델 준비가 추론 Thread 에 요청되어 있으면 true (중복 요청 방지)
+    private final AtomicBoolean preparePending = new AtomicBoolean();
+
+    private final Thread inferThread;
+    private final Thread postThread;
+
+    // 추론하는 프레임을 복사해 둘 증거 사진용 Ring buffer (없으면 사용 안 함)
+    private volatile EvidenceFrameRing frameRing;
+
+    // 변환 Thread 가 가지고 있는 작업 (변환하지 않고 돌려받은 경우 재사용)
+    private DetectionJob currentJob;
+
+    private volatile boolean running = true;
+
+    // 통계 값들
+    private final AtomicLong convertedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong inferredFrames = new AtomicLong();
+    private final AtomicLong discardedFrames = new AtomicLong();
+
+    public DetectionPipeline(ObjectDetectorHelper detectorHelper) {
+        this.detectorHelper = detectorHelper;
+
+        int banks = FrameBufferPool.BANKS;
+        freeJobs = new SpscQueue<>(banks);
+        inferQueue = new SpscQueue<>(banks);
+        postQueue = new SpscQueue<>(banks);
+        for (int bank = 0; bank < banks; bank++) {
+            freeJobs.offer(new DetectionJob(bank));
+        }
+
+        inferThread = new Thread(this::inferLoop, "InferThread");
+        postThread = new Thread(this::postLoop, "PostThread");
+        inferThread.start();
+        postThread.start();
+    }
+
+    /**
+     * 변환할 작업을 미리 확보 - DetectionScheduler Thread 에서 프레임을 읽어오기 전에 호출됨
+     */
+    @Override
+    public boolean canAccept() {
+        if (!running) {
+            return false;
+        }
+        if (currentJob == null) {
+            currentJob = freeJobs.poll();
+            if (currentJob == null) {
+                // 추론이 밀려 있어 변환할 버퍼가 없음
+                droppedFrames.incrementAndGet();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 변환 단계 - DetectionScheduler Thread 에서 호출됨
+     */
+    @Override
+    public void process(VideoFrame.I420Buffer buffer, int rotation, long timestampNs) {
+        if (!canAccept()) {
+            return;
+        }
+        // 모델 로드 실패 후 재시도 / Backend 변경은 추론할 작업이 없어도 추론 Thread 에서 처리
+        if (detectorHelper.needsPrepare()) {
+            requestPrepare();
+        }
+
+        DetectionJob job = currentJob;
+        job.reset();
+        if (!detectorHelper.convert(job, buffer, rotation, timestampNs)) {
+            return;
+        }
+
+        EvidenceFrameRing ring = frameRing;
+        if (ring != null && !job.getReused()) {
+            ring.write(buffer, rotation, timestampNs);
+        }
+
+        currentJob = null;
+        convertedFrames.incrementAndGet();
+        inferQueue.offer(job);
+        LockSupport.unpark(inferThread);
+    }
+
+    public void setFrameRing(EvidenceFrameRing frameRing) {
+        this.frameRing = frameRing;
+    }
+
+    /**
+     * 추론 Thread 에서 작업 실행 (모델 준비, Backend 교체, Benchmark 등)
+     */
+    public void runOnInferThread(Runnable task) {
+        inferTasks.offer(task);
+        LockSupport.unpark(inferThread);
+    }
+
+    /**
+     * 추론 Thread 에서 모델 준비 (Backend 변경 적용 포함), 이미 요청되어 있으면 무시
+     */
+    public void requestPrepare() {
+        if (!preparePending.compareAndSet(false, true)) {
+            return;
+        }
+        runOnInferThread(() -> {
+            try {
+                detectorHelper.prepareIfNeeded();
+            } finally {
+                preparePending.set(false);
+            }
+        });
+    }
+
+    private void inferLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        while (running) {
+            Runnable task;
+            while ((task = inferTasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    Log.e(TAG, "추론 Thread 작업 중 오류 발생", e);
+                }
+            }
+
+            DetectionJob job = inferQueue.poll();
+            if (job == null) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            try {
+                detectorHelper.applyEngineChange();
+                job.setDiscarded(!detectorHelper.infer(job));
+            } catch (Exception e) {
+                Log.e(TAG, "추론 중 오류 발생", e);
+                job.setDiscarded(true);
+            }
+            if (job.getDiscarded()) {
+                discardedFrames.incrementAndGet();
+            } else {
+                inferredFrames.incrementAndGet();
+            }
+
+            postQueue.offer(job);
+            LockSupport.unpark(postThread);
+        }
+    }
+
+    private void postLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+        while (running) {
+            DetectionJob job = postQueue.poll();
+            if (job == null) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            try {
+                if (!job.getDiscarded()) {
+                    detectorHelper.deliver(job);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "후처리 중 오류 발생", e);
+            } finally {
+                // 결과 참조를 끊고 변환 단계로 돌려줌
+                job.reset();
+                freeJobs.offer(job);
+            }
+        }
+    }
+
+    public long getConvertedFrames() {
+        return convertedFrames.get();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    public long getInferredFrames() {
+        return inferredFrames.get();
+    }
+
+    public long getDiscardedFrames() {
+        return discardedFrames.get();
+    }
+
+    /**
+     * 추론 / 후처리 Thread 종료 (진행 중인 작업이 끝날 때까지 대기)
+     * <p>
+     * 이후에 Detector (Interpreter) 를 닫으므로, 추론 중인 Thread 를 시간 제한 없이 기다린다.
+     */
+    public void release() {
+        running = false;
+        LockSupport.unpark(inferThread);
+        LockSupport.unpark(postThread);
+        try {
+            inferThread.join();
+            postThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        inferTasks.clear();
+        Log.d(TAG, "DetectionPipeline 종료됨 - converted: " + convertedFrames.get()
+                + ", inferred: " + inferredFrames.get()
+                + ", dropped: " + droppedFrames.get()
+                + ", discarded: " + discardedFrames.get());
+    }
+}
@@ -0,0 +1,248 @@
+package kr.co.edoubles.carlostdetect.service;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 최신 프레임만 남기고 탐지를 별도 Worker 에서 목표 주기로 실행하는 Scheduler
+ * <p>
+ * Capture Thread 에서는 retain / release 만 수행하며, 주기가 되지 않은 프레임과
+ * 새 프레임에 밀려난 프레임은 변환 없이 바로 버린다.
+ * SurfaceTextureHelper 는 이전 Texture 가 release 되어야 다음 프레임을 전달하므로,
+ * Worker 는 프레임을 꺼내자마자 I420 으로 변환한 뒤 원본을 release 한다.
+ * <p>
+ * 변환 전에 cropAndScale 로 탐지용 크기까지 줄여서 읽어오므로 (Texture 는 GPU 에서 축소),
+ * 스트리밍 해상도와 탐지 비용이 서로 독립적이다.
+ */
+public class DetectionScheduler implements VideoSink {
+
+    private static final String TAG = "DetectionScheduler";
+
+    /**
+     * Worker Thread 에서 변환된 프레임을 처리하는 Interface
+     */
+    public interface FrameProcessor {
+        /**
+         * @param buffer      I420 버퍼 (호출 후 Scheduler 가 release)
+         * @param rotation    프레임 회전 값
+         * @param timestampNs 프레임 Timestamp
+         */
+        void process(VideoFrame.I420Buffer buffer, int rotation, long timestampNs);
+
+        /**
+         * 지금 프레임을 받을 수 있는지 (false 면 Scheduler 가 변환하지 않고 버림)
+         */
+        default boolean canAccept() {
+            return true;
+        }
+    }
+
+    private final FrameProcessor processor;
+    private final HandlerThread workerThread;
+    private final Handler workerHandler;
+
+    // 아직 처리되지 않은 최신 프레임 (최대 1개만 retain)
+    private final AtomicReference<VideoFrame> pendingFrame = new AtomicReference<>();
+    private final AtomicBoolean drainPosted = new AtomicBoolean(false);
+
+    private volatile long intervalNs;
+    // 탐지용 프레임의 긴 변 최대 크기 (0 이하면 원본 크기)
+    private volatile int maxDetectionSide;
+    private volatile long nextDueNs = 0;
+    private volatile boolean busy = false;
+    private volatile boolean running = true;
+
+    // 통계 값들
+    private final AtomicLong receivedFrames = new AtomicLong();
+    private final AtomicLong skippedFrames = new AtomicLong();
+    private final AtomicLong supersededFrames = new AtomicLong();
+    private final AtomicLong processedFrames = new AtomicLong();
+    private final AtomicLong rejectedFrames = new AtomicLong();
+
+    private final Runnable drainRunnable = this::drain;
+
+    public DetectionScheduler(long intervalMs, int maxDetectionSide, FrameProcessor processor) {
+        this.processor = processor;
+        this.intervalNs = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        this.maxDetectionSide = maxDetectionSide;
+
+        workerThread = new HandlerThread("DetectThread", Process.THREAD_PRIORITY_BACKGROUND);
+        workerThread.start();
+        workerHandler = new Handler(workerThread.getLooper());
+    }
+
+    /**
+     * 목표 탐지 주기를 fps 로 설정
+     */
+    public void setTargetFps(float fps) {
+        if (fps <= 0) {
+            Log.e(TAG, "잘못된 목표 fps : " + fps);
+            return;
+        }
+        intervalNs = (long) (TimeUnit.SECONDS.toNanos(1) / fps);
+        nextDueNs = 0;
+    }
+
+    public float getTargetFps() {
+        return TimeUnit.SECONDS.toNanos(1) / (float) intervalNs;
+    }
+
+    /**
+     * 탐지용 프레임의 긴 변 최대 크기 설정 (0 이하면 원본 크기 사용)
+     */
+    public void setMaxDetectionSide(int maxDetectionSide) {
+        this.maxDetectionSide = maxDetectionSide;
+    }
+
+    /**
+     * Capture Thread 에서 호출됨 - 변환 없이 retain / release 만 수행
+     */
+    @Override
+    public void onFrame(VideoFrame videoFrame) {
+        receivedFrames.incrementAndGet();
+
+        if (!running || busy || System.nanoTime() < nextDueNs) {
+            skippedFrames.incrementAndGet();
+            return;
+        }
+
+        videoFrame.retain();
+        VideoFrame superseded = pendingFrame.getAndSet(videoFrame);
+        if (superseded != null) {
+            superseded.release();
+            supersededFrames.incrementAndGet();
+        }
+
+        if (!running) {
+            // release() 와 경쟁한 경우 직접 정리
+            releasePending();
+            return;
+        }
+
+        if (drainPosted.compareAndSet(false, true)) {
+            workerHandler.post(drainRunnable);
+        }
+    }
+
+    private void drain() {
+        drainPosted.set(false);
+
+        VideoFrame frame = pendingFrame.getAndSet(null);
+        if (frame == null) {
+            return;
+        }
+
+        if (!processor.canAccept()) {
+            // 뒤 단계가 밀려 있으면 cropAndScale / toI420 비용을 쓰지 않고 바로 버림
+            frame.release();
+            rejectedFrames.incrementAndGet();
+            return;
+        }
+
+        busy = true;
+        long startNs = System.nanoTime();
+        nextDueNs = startNs + intervalNs;
+
+        VideoFrame.I420Buffer i420Buffer = null;
+        VideoFrame.Buffer scaledBuffer = null;
+        int rotation = frame.getRotation();
+        long timestampNs = frame.getTimestampNs();
+        try {
+            // CPU 로 읽어오기 전에 탐지 크기로 축소
+            scaledBuffer = scaleForDetection(frame.getBuffer());
+            i420Buffer = scaledBuffer.toI420();
+        } catch (Exception e) {
+            Log.e(TAG, "I420 변환 중 오류 발생", e);
+        } finally {
+            if (scaledBuffer != null && scaledBuffer != frame.getBuffer()) {
+                scaledBuffer.release();
+            }
+            // Texture 를 빨리 돌려주어 Capture / Encoder 가 멈추지 않도록 함
+            frame.release();
+        }
+
+        if (i420Buffer != null) {
+            try {
+                processor.process(i420Buffer, rotation, timestampNs);
+                processedFrames.incrementAndGet();
+            } catch (Exception e) {
+                Log.e(TAG, "프레임 처리 중 오류 발생", e);
+            } finally {
+                i420Buffer.release();
+            }
+        }
+
+        busy = false;
+    }
+
+    /**
+     * 긴 변이 maxDetectionSide 를 넘으면 비율을 유지해 축소한 버퍼를 반환 (새 버퍼는 호출 측에서 release)
+     */
+    private VideoFrame.Buffer scaleForDetection(VideoFrame.Buffer buffer) {
+        int width = buffer.getWidth();
+        int height = buffer.getHeight();
+        int longSide = Math.max(width, height);
+        int maxSide = maxDetectionSide;
+        if (maxSide <= 0 || longSide <= maxSide) {
+            return buffer;
+        }
+
+        float scale = maxSide / (float) longSide;
+        // I420 Chroma Plane 을 위해 짝수 크기로 맞춤
+        int scaledWidth = Math.max(2, (int) (width * scale) & ~1);
+        int scaledHeight = Math.max(2, (int) (height * scale) & ~1);
+        return buffer.cropAndScale(0, 0, width, height, scaledWidth, scaledHeight);
+    }
+
+    private void releasePending() {
+        VideoFrame frame = pendingFrame.getAndSet(null);
+        if (frame != null) {
+            frame.release();
+        }
+    }
+
+    public long getReceivedFrames() {
+        return receivedFrames.get();
+    }
+
+    public long getSkippedFrames() {
+        return skippedFrames.get();
+    }
+
+    public long getSupersededFrames() {
+        return supersededFrames.get();
+    }
+
+    public long getProcessedFrames() {
+        return processedFrames.get();
+    }
+
+    public long getRejectedFrames() {
+        return rejectedFrames.get();
+    }
+
+    /**
+     * Worker 종료 및 남은 프레임 해제
+     */
+    public void release() {
+        running = false;
+        workerHandler.removeCallbacks(drainRunnable);
+        workerHandler.post(this::releasePending);
+        workerThread.quitSafely();
+        Log.d(TAG, "DetectionScheduler 종료됨 - received: " + receivedFrames.get()
+                + ", processed: " + processedFrames.get()
+                + ", skipped: " + skippedFrames.get()
+                + ", superseded: " + supersededFrames.get()
+                + ", rejected: " + rejectedFrames.get());
+    }
+}
@@ -0,0 +1,266 @@
+package kr.co.edoubles.carlostdetect.service;
+
+import android.graphics.ImageFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.YuvImage;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import org.tensorflow.lite.task.vision.detector.Detection;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 분실물 이벤트가 발생했을 때 EvidenceFrameRing 의 프레임으로 증거 사진 (JPEG) 을 만드는 Class
+ * <p>
+ * 낮은 우선순위 Thread 에서 실행되며, 분실물 Label 별로 해당 물체가 보이는 가장 최근 프레임을 골라
+ * Box 주변만 잘라서 JPEG 으로 만든다. 물체가 보이는 프레임이 없으면 가장 최근 전체 프레임을 사용한다.
+ * JPEG 은 센서 방향 그대로 저장되며, 회전 값은 Snapshot 에 함께 담는다.
+ */
+public class EvidenceEncoder {
+
+    private static final String TAG = "EvidenceEncoder";
+
+    /**
+     * 증거 사진 한 장
+     */
+    public static class Snapshot {
+        public final String label;
+        public final long timestampNs;
+        public final int rotation;
+        public final byte[] jpeg;
+
+        Snapshot(String label, long timestampNs, int rotation, byte[] jpeg) {
+            this.label = label;
+            this.timestampNs = timestampNs;
+            this.rotation = rotation;
+            this.jpeg = jpeg;
+        }
+    }
+
+    public interface Callback {
+        /**
+         * 증거 사진 생성 완료 (Encoder Thread 에서 호출됨)
+         *
+         * @param lost      분실물 문자열 (findLostItems 결과)
+         * @param snapshots Label 별 증거 사진
+         */
+        void onEvidenceReady(String lost, List<Snapshot> snapshots);
+    }
+
+    private final EvidenceFrameRing frameRing;
+    private final int quality;
+    private final float cropMargin;
+    private final HandlerThread encoderThread;
+    private final Handler encoderHandler;
+
+    // Encoder Thread 에서만 사용하는 버퍼 (i420 은 slot 잠금 중 복사만 하고, NV21 / JPEG 변환은 잠금 밖에서)
+    private byte[] i420 = new byte[0];
+    private byte[] nv21 = new byte[0];
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    private final Rect cropRect = new Rect();
+
+    public EvidenceEncoder(EvidenceFrameRing frameRing, int quality, float cropMargin) {
+        this.frameRing = frameRing;
+        this.quality = quality;
+        this.cropMargin = cropMargin;
+
+        encoderThread = new HandlerThread("EvidenceThread", Process.THREAD_PRIORITY_LOWEST);
+        encoderThread.start();
+        encoderHandler = new Handler(encoderThread.getLooper());
+    }
+
+    /**
+     * 분실물 Label 목록으로 증거 사진 생성 요청
+     */
+    public void encode(String lost, List<String> labels, Callback callback) {
+        encoderHandler.post(() -> {
+            long startTime = System.nanoTime();
+            List<Snapshot> snapshots = new ArrayList<>(labels.size());
+
+            for (String label : labels) {
+                Snapshot snapshot = encodeLabel(label);
+                if (snapshot != null) {
+                    snapshots.add(snapshot);
+                }
+            }
+            if (snapshots.isEmpty()) {
+                Snapshot snapshot = encodeLabel(null);
+                if (snapshot != null) {
+                    snapshots.add(snapshot);
+                }
+            }
+
+            Log.d(TAG, "encode: " + labels + " -> " + snapshots.size() + " snapshots, "
+                    + (System.nanoTime() - startTime) / 1_000_000 + "ms");
+            callback.onEvidenceReady(lost, snapshots);
+        });
+    }
+
+    /**
+     * label 이 보이는 가장 최근 프레임을 찾아 Box 주변을 JPEG 으로 변환 (label 이 null 이면 가장 최근 전체 프레임)
+     */
+    private Snapshot encodeLabel(String label) {
+        for (int age = 0; age < frameRing.size(); age++) {
+            EvidenceFrameRing.Slot slot = frameRing.recent(age);
+            if (slot == null) {
+                continue;
+            }
+
+            int width;
+            int height;
+            int rotation;
+            long timestampNs;
+            synchronized (slot) {
+                if (!slot.valid) {
+                    continue;
+                }
+                RectF box = null;
+                if (label != null) {
+                    box = findBox(slot.results, label);
+                    if (box == null) {
+                        continue;
+                    }
+                }
+                width = slot.width;
+                height = slot.height;
+                rotation = slot.rotation;
+                timestampNs = slot.timestampNs;
+
+                setCropRect(box, width, height, rotation);
+                copyFrame(slot.data, width, height);
+            }
+
+            // 변환 Thread 가 slot 을 기다리지 않도록 잠금을 푼 뒤 변환
+            copyToNv21(width, height);
+            outputStream.reset();
+            YuvImage image = new YuvImage(nv21, ImageFormat.NV21, width, height, null);
+            if (!image.compressToJpeg(cropRect, quality, outputStream)) {
+                Log.e(TAG, "JPEG 변환 실패 : " + label);
+                return null;
+            }
+            return new Snapshot(label, timestampNs, rotation, outputStream.toByteArray());
+        }
+        return null;
+    }
+
+    private static RectF findBox(List<Detection> results, String label) {
+        if (results == null) {
+            return null;
+        }
+        Detection best = null;
+        for (Detection detection : results) {
+            if (label.equals(detection.getCategories().get(0).getLabel())
+                    && (best == null || detection.getCategories().get(0).getScore() > best.getCategories().get(0).getScore())) {
+                best = detection;
+            }
+        }
+        return best == null ? null : best.getBoundingBox();
+    }
+
+    /**
+     * 회전된 (화면 기준) 좌표의 Box 를 여백을 더해 센서 기준 좌표로 변환 (NV21 을 위해 짝수로 맞춤)
+     */
+    private void setCropRect(RectF box, int width, int height, int rotation) {
+        if (box == null) {
+            cropRect.set(0, 0, width, height);
+            return;
+        }
+        float marginX = box.width() * cropMargin;
+        float marginY = box.height() * cropMargin;
+        float left = box.left - marginX;
+        float top = box.top - marginY;
+        float right = box.right + marginX;
+        float bottom = box.bottom + marginY;
+
+        float sx0;
+        float sy0;
+        float sx1;
+        float sy1;
+        switch (((rotation % 360) + 360) % 360) {
+            case 90:
+                sx0 = top;
+                sx1 = bottom;
+                sy0 = height - right;
+                sy1 = height - left;
+                break;
+            case 180:
+                sx0 = width - right;
+                sx1 = width - left;
+                sy0 = height - bottom;
+                sy1 = height - top;
+                break;
+            case 270:
+                sx0 = width - bottom;
+                sx1 = width - top;
+                sy0 = left;
+                sy1 = right;
+                break;
+            default:
+                sx0 = left;
+                sx1 = right;
+                sy0 = top;
+                sy1 = bottom;
+                break;
+        }
+
+        int l = Math.max(0, (int) sx0) & ~1;
+        int t = Math.max(0, (int) sy0) & ~1;
+        int r = Math.min(width, (int) Math.ceil(sx1));
+        int b = Math.min(height, (int) Math.ceil(sy1));
+        if (r - l < 2 || b - t < 2) {
+            cropRect.set(0, 0, width, height);
+        } else {
+            cropRect.set(l, t, r, b);
+        }
+    }
+
+    private static int frameSize(int width, int height) {
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        return width * height + chromaWidth * chromaHeight * 2;
+    }
+
+    /**
+     * slot 의 연속 I420 (Y, U, V) 을 Encoder 버퍼로 복사 (slot 잠금 중 호출, 한 번의 bulk 복사)
+     */
+    private void copyFrame(ByteBuffer data, int width, int height) {
+        int required = frameSize(width, height);
+        if (i420.length < required) {
+            i420 = new byte[required];
+        }
+        data.position(0);
+        data.get(i420, 0, required);
+    }
+
+    /**
+     * 복사해 둔 I420 을 NV21 (Y, VU interleaved) 로 변환
+     */
+    private void copyToNv21(int width, int height) {
+        int ySize = width * height;
+        int chromaSize = ((width + 1) / 2) * ((height + 1) / 2);
+        int required = frameSize(width, height);
+        if (nv21.length < required) {
+            nv21 = new byte[required];
+        }
+
+        System.arraycopy(i420, 0, nv21, 0, ySize);
+        int uOffset = ySize;
+        int vOffset = ySize + chromaSize;
+        for (int i = 0; i < chromaSize; i++) {
+            nv21[ySize + i * 2] = i420[vOffset + i];
+            nv21[ySize + i * 2 + 1] = i420[uOffset + i];
+        }
+    }
+
+    public void release() {
+        encoderHandler.removeCallbacksAndMessages(null);
+        encoderThread.quitSafely();
+    }
+}
@@ -0,0 +1,126 @@
+package kr.co.edoubles.carlostdetect.service;
+
+import org.tensorflow.lite.task.vision.detector.Detection;
+import org.webrtc.VideoFrame;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 최근 탐지 프레임 N 개를 보관하는 고정 크기 Ring buffer
+ * <p>
+ * 탐지용으로 축소된 I420 프레임을 slot 별 Direct ByteBuffer (Off-heap) 에 복사해 두고,
+ * 추론이 끝나면 같은 Timestamp 의 slot 에 탐지 결과를 붙인다.
+ * slot 버퍼는 처음 한 번 (또는 더 큰 프레임이 들어올 때) 만 할당하므로 정상 상태에서는 할당이 없다.
+ * 분실물 이벤트가 발생하면 EvidenceEncoder 가 slot 을 읽어 JPEG 으로 만든다.
+ */
+public class EvidenceFrameRing {
+
+    /**
+     * 프레임 한 장 (Y, U, V Plane 을 stride 없이 연속으로 저장)
+     */
+    static final class Slot {
+        ByteBuffer data;
+        int width;
+        int height;
+        int rotation;
+        long timestampNs;
+        boolean valid;
+        List<Detection> results;
+    }
+
+    private final Slot[] slots;
+    // 다음에 쓸 slot (변환 Thread 에서만 변경)
+    private volatile int writeIndex = 0;
+
+    public EvidenceFrameRing(int size) {
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    public int size() {
+        return slots.length;
+    }
+
+    /**
+     * 변환 Thread 에서 호출 - 가장 오래된 slot 에 프레임 복사
+     */
+    public void write(VideoFrame.I420Buffer buffer, int rotation, long timestampNs) {
+        Slot slot = slots[writeIndex];
+        writeIndex = (writeIndex + 1) % slots.length;
+
+        int width = buffer.getWidth();
+        int height = buffer.getHeight();
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        int required = width * height + chromaWidth * chromaHeight * 2;
+
+        synchronized (slot) {
+            if (slot.data == null || slot.data.capacity() < required) {
+                slot.data = ByteBuffer.allocateDirect(required);
+            }
+            ByteBuffer data = slot.data;
+            data.clear();
+            copyPlane(buffer.getDataY(), buffer.getStrideY(), width, height, data);
+            copyPlane(buffer.getDataU(), buffer.getStrideU(), chromaWidth, chromaHeight, data);
+            copyPlane(buffer.getDataV(), buffer.getStrideV(), chromaWidth, chromaHeight, data);
+
+            slot.width = width;
+            slot.height = height;
+            slot.rotation = rotation;
+            slot.timestampNs = timestampNs;
+            slot.results = null;
+            slot.valid = true;
+        }
+    }
+
+    private static void copyPlane(ByteBuffer src, int stride, int width, int height, ByteBuffer dst) {
+        if (stride == width) {
+            src.position(0).limit(width * height);
+            dst.put(src);
+            return;
+        }
+        for (int row = 0; row < height; row++) {
+            int start = row * stride;
+            src.limit(start + width).position(start);
+            dst.put(src);
+        }
+    }
+
+    /**
+     * 후처리 Thread 에서 호출 - 같은 Timestamp 의 프레임에 탐지 결과를 붙임
+     */
+    public void attachResults(long timestampNs, List<Detection> results) {
+        for (Slot slot : slots) {
+            synchronized (slot) {
+                if (slot.valid && slot.timestampNs == timestampNs) {
+                    slot.results = results;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 최근 프레임부터 순서대로 slot 반환 (age 0 이 가장 최근), 비어 있으면 null
+     * 반환된 slot 은 synchronized 로 잠근 뒤 읽어야 한다
+     */
+    Slot recent(int age) {
+        int index = Math.floorMod(writeIndex - 1 - age, slots.length);
+        Slot slot = slots[index];
+        synchronized (slot) {
+            return slot.valid ? slot : null;
+        }
+    }
+
+    public void clear() {
+        for (Slot slot : slots) {
+            synchronized (slot) {
+                slot.valid = false;
+                slot.results = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package kr.co.edoubles.carlostdetect.service;
+
+import android.util.Log;
+
+import org.webrtc.CapturerObserver;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSink;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Capturer 와 프레임 소비자 (스트리밍 / 미리보기 / 탐지) 사이에서 프레임을 나눠주는 CapturerObserver
+ * <p>
+ * 스트리밍은 VideoSource 의 CapturerObserver 로 그대로 넘기고, 해상도 / fps 는 adaptOutputFormat 으로
+ * Native 단에서 맞춘다. 나머지 Sink 는 각자 최대 fps 와 긴 변 최대 크기를 가지며,
+ * 주기가 되지 않은 프레임은 retain / 변환 없이 Capture Thread 에서 바로 건너뛴다.
+ * Sink 목록은 배열을 통째로 교체하므로 (Copy-on-write) 프레임 전달 중에는 lock 과 할당이 없고,
+ * 제거된 Sink (예: 백그라운드로 간 화면) 는 비용이 전혀 없다.
+ */
+public class FrameFanout implements CapturerObserver {
+
+    private static final String TAG = "FrameFanout";
+
+    private static final class SinkEntry {
+        final VideoSink sink;
+        volatile long intervalNs;
+        volatile int maxSide;
+        // Capture Thread 에서만 사용
+        long nextDueNs = 0;
+        long deliveredFrames = 0;
+
+        SinkEntry(VideoSink sink, int maxFps, int maxSide) {
+            this.sink = sink;
+            this.intervalNs = toIntervalNs(maxFps);
+            this.maxSide = maxSide;
+        }
+    }
+
+    private final CapturerObserver sourceObserver;
+    private final Object lock = new Object();
+    private volatile SinkEntry[] entries = new SinkEntry[0];
+
+    // 통계 값들
+    private final AtomicLong capturedFrames = new AtomicLong();
+    private final AtomicLong skippedFrames = new AtomicLong();
+
+    public FrameFanout(CapturerObserver sourceObserver) {
+        this.sourceObserver = sourceObserver;
+    }
+
+    /**
+     * Sink 등록 (이미 등록된 Sink 면 설정만 변경)
+     *
+     * @param maxFps  최대 fps (0 이하면 제한 없음)
+     * @param maxSide 긴 변 최대 크기 (0 이하면 원본 크기)
+     */
+    public void addSink(VideoSink sink, int maxFps, int maxSide) {
+        synchronized (lock) {
+            for (SinkEntry entry : entries) {
+                if (entry.sink == sink) {
+                    entry.intervalNs = toIntervalNs(maxFps);
+                    entry.maxSide = maxSide;
+                    return;
+                }
+            }
+            SinkEntry[] next = new SinkEntry[entries.length + 1];
+            System.arraycopy(entries, 0, next, 0, entries.length);
+            next[entries.length] = new SinkEntry(sink, maxFps, maxSide);
+            entries = next;
+        }
+        Log.d(TAG, "Sink 추가됨 : " + sink + " (" + maxFps + "fps, " + maxSide + ")");
+    }
+
+    public void removeSink(VideoSink sink) {
+        synchronized (lock) {
+            int index = -1;
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].sink == sink) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return;
+            }
+            SinkEntry removed = entries[index];
+            SinkEntry[] next = new SinkEntry[entries.length - 1];
+            System.arraycopy(entries, 0, next, 0, index);
+            System.arraycopy(entries, index + 1, next, index, entries.length - index - 1);
+            entries = next;
+            Log.d(TAG, "Sink 제거됨 : " + sink + " - delivered: " + removed.deliveredFrames);
+        }
+    }
+
+    @Override
+    public void onCapturerStarted(boolean success) {
+        sourceObserver.onCapturerStarted(success);
+    }
+
+    @Override
+    public void onCapturerStopped() {
+        sourceObserver.onCapturerStopped();
+    }
+
+    /**
+     * Capture Thread 에서 호출됨
+     */
+    @Override
+    public void onFrameCaptured(VideoFrame frame) {
+        capturedFrames.incrementAndGet();
+        sourceObserver.onFrameCaptured(frame);
+
+        long timestampNs = frame.getTimestampNs();
+        for (SinkEntry entry : entries) {
+            if (!isDue(entry, timestampNs)) {
+                skippedFrames.incrementAndGet();
+                continue;
+            }
+            entry.deliveredFrames++;
+            deliver(entry, frame);
+        }
+    }
+
+    /**
+     * 카메라 프레임 간격의 흔들림으로 주기를 놓치지 않도록 주기의 1/4 만큼 일찍 온 프레임도 허용
+     */
+    private static boolean isDue(SinkEntry entry, long timestampNs) {
+        long intervalNs = entry.intervalNs;
+        if (intervalNs <= 0) {
+            return true;
+        }
+        if (timestampNs < entry.nextDueNs - intervalNs / 4) {
+            return false;
+        }
+        // 오래 멈춰 있었으면 (또는 처음이면) 현재 시각 기준으로 다시 시작
+        entry.nextDueNs = timestampNs - entry.nextDueNs > intervalNs
+                ? timestampNs + intervalNs : entry.nextDueNs + intervalNs;
+        return true;
+    }
+
+    private static void deliver(SinkEntry entry, VideoFrame frame) {
+        VideoFrame.Buffer buffer = frame.getBuffer();
+        int width = buffer.getWidth();
+        int height = buffer.getHeight();
+        int longSide = Math.max(width, height);
+        int maxSide = entry.maxSide;
+        if (maxSide <= 0 || longSide <= maxSide) {
+            entry.sink.onFrame(frame);
+            return;
+        }
+
+        // Texture 버퍼는 cropAndScale 이 GPU 변환 행렬만 바꾸므로 실제 변환은 Sink 가 읽을 때 일어남
+        float scale = maxSide / (float) longSide;
+        int scaledWidth = Math.max(2, (int) (width * scale) & ~1);
+        int scaledHeight = Math.max(2, (int) (height * scale) & ~1);
+        VideoFrame.Buffer scaled = buffer.cropAndScale(0, 0, width, height, scaledWidth, scaledHeight);
+        VideoFrame scaledFrame = new VideoFrame(scaled, frame.getRotation(), frame.getTimestampNs());
+        try {
+            entry.sink.onFrame(scaledFrame);
+        } finally {
+            scaledFrame.release();
+        }
+    }
+
+    private static long toIntervalNs(int maxFps) {
+        return maxFps <= 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / maxFps;
+    }
+
+    public long getCapturedFrames() {
+        return capturedFrames.get();
+    }
+
+    public long getSkippedFrames() {
+        return skippedFrames.get();
+    }
+
+    /**
+     * 모든 Sink 제거
+     */
+    public void release() {
+        synchronized (lock) {
+            entries = new SinkEntry[0];
+        }
+        Log.d(TAG, "FrameFanout 종료됨 - captured: " + capturedFrames.get() + ", skipped: " + skippedFrames.get());
+    }
+}
@@ -0,0 +1,65 @@
+package kr.co.edoubles.carlostdetect.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 단일 생산자 / 단일 소비자 용 고정 크기 Lock-free Queue
+ * <p>
+ * offer 는 한 Thread 에서만, poll 은 다른 한 Thread 에서만 호출해야 한다.
+ * 생성 이후 할당이 발생하지 않아 프레임 단위로 작업을 넘길 때 사용한다.
+ */
+public class SpscQueue<T> {
+
+    private final AtomicReferenceArray<T> buffer;
+    private final int mask;
+
+    // 다음에 꺼낼 위치 (소비자만 증가) / 다음에 넣을 위치 (생산자만 증가)
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity 최대 원소 수 (2의 거듭제곱으로 올림)
+     */
+    public SpscQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        buffer = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * 생산자 Thread 에서 호출 - 가득 차 있으면 false
+     */
+    public boolean offer(T element) {
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            return false;
+        }
+        buffer.lazySet((int) (t & mask), element);
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * 소비자 Thread 에서 호출 - 비어 있으면 null
+     */
+    public T poll() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        int index = (int) (h & mask);
+        T element = buffer.get(index);
+        buffer.lazySet(index, null);
+        head.lazySet(h + 1);
+        return element;
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,173 @@
+package kr.co.edoubles.carlostdetect.service;
+
+import android.view.Choreographer;
+
+import org.tensorflow.lite.task.vision.detector.Detection;
+
+import java.util.List;
+
+/**
+ * Service 에서 화면 (Activity) 으로 최신 탐지 상태를 전달하는 Channel
+ * <p>
+ * Service 의 작업 Thread 는 최신 상태만 저장하고 (이전 상태는 덮어씀), 화면이 연결되어 있을 때만
+ * Main Thread 의 Choreographer 에 다음 vsync 콜백을 한 번 요청한다.
+ * 화면은 vsync 마다 최대 한 번, 바뀐 항목만 전달받는다. 화면이 연결되지 않은 동안에는 상태 저장 외의 작업이 없다.
+ */
+public class UiStateChannel {
+
+    public interface Observer {
+        /**
+         * 최신 탐지 결과 (Main Thread 에서 vsync 마다 최대 한 번 호출)
+         */
+        void onDetectionState(List<Detection> results, int imageHeight, int imageWidth);
+
+        /**
+         * 최신 분실물 문자열 (Main Thread 에서 호출)
+         */
+        void onLostState(String lost);
+    }
+
+    // 작업 Thread 에서 쓰고 Main Thread 에서 읽는 최신 상태 (lock 으로 보호)
+    private final Object lock = new Object();
+    private List<Detection> results;
+    private int imageHeight;
+    private int imageWidth;
+    private long resultsVersion = 0;
+    private String lost;
+    private long lostVersion = 0;
+
+    // Main Thread 에서만 사용하는 값들
+    private long deliveredResultsVersion = 0;
+    private long deliveredLostVersion = 0;
+
+    private volatile Observer observer;
+    private volatile Choreographer choreographer;
+    private boolean frameScheduled = false;
+
+    // 통계 값들
+    private long publishedStates = 0;
+    private long deliveredStates = 0;
+
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> deliver();
+
+    /**
+     * 탐지 결과 갱신 (작업 Thread 에서 호출, results 는 호출 후 변경하지 않아야 함)
+     */
+    public void publishResults(List<Detection> results, int imageHeight, int imageWidth) {
+        synchronized (lock) {
+            this.results = results;
+            this.imageHeight = imageHeight;
+            this.imageWidth = imageWidth;
+            resultsVersion++;
+            publishedStates++;
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * 분실물 문자열 갱신 (작업 Thread 에서 호출)
+     */
+    public void publishLost(String lost) {
+        synchronized (lock) {
+            this.lost = lost;
+            lostVersion++;
+            publishedStates++;
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * 화면 연결 (Main Thread 에서 호출, 보통 onStart) - 연결 즉시 최신 상태를 다음 vsync 에 전달
+     */
+    public void attach(Observer observer) {
+        choreographer = Choreographer.getInstance();
+        this.observer = observer;
+        synchronized (lock) {
+            deliveredResultsVersion = 0;
+            deliveredLostVersion = 0;
+        }
+        scheduleFrame();
+    }
+
+    /**
+     * 화면 연결 해제 (Main Thread 에서 호출, 보통 onStop)
+     */
+    public void detach(Observer observer) {
+        if (this.observer != observer) {
+            return;
+        }
+        this.observer = null;
+        Choreographer current = choreographer;
+        if (current != null) {
+            current.removeFrameCallback(frameCallback);
+        }
+        synchronized (lock) {
+            frameScheduled = false;
+        }
+    }
+
+    private void scheduleFrame() {
+        Choreographer current = choreographer;
+        if (observer == null || current == null) {
+            return;
+        }
+        synchronized (lock) {
+            if (frameScheduled) {
+                return;
+            }
+            frameScheduled = true;
+        }
+        current.postFrameCallback(frameCallback);
+    }
+
+    /**
+     * Main Thread vsync 콜백 - 마지막 전달 이후 바뀐 항목만 전달
+     */
+    private void deliver() {
+        List<Detection> currentResults = null;
+        int currentHeight = 0;
+        int currentWidth = 0;
+        boolean resultsChanged;
+        String currentLost = null;
+        boolean lostChanged;
+
+        synchronized (lock) {
+            frameScheduled = false;
+            resultsChanged = resultsVersion != deliveredResultsVersion && results != null;
+            if (resultsChanged) {
+                currentResults = results;
+                currentHeight = imageHeight;
+                currentWidth = imageWidth;
+                deliveredResultsVersion = resultsVersion;
+            }
+            lostChanged = lostVersion != deliveredLostVersion && lost != null;
+            if (lostChanged) {
+                currentLost = lost;
+                deliveredLostVersion = lostVersion;
+            }
+        }
+
+        Observer current = observer;
+        if (current == null) {
+            return;
+        }
+        if (resultsChanged) {
+            current.onDetectionState(currentResults, currentHeight, currentWidth);
+            deliveredStates++;
+        }
+        if (lostChanged) {
+            current.onLostState(currentLost);
+            deliveredStates++;
+        }
+    }
+
+    public long getPublishedStates() {
+        synchronized (lock) {
+            return publishedStates;
+        }
+    }
+
+    public long getDeliveredStates() {
+        return deliveredStates;
+    }
+}
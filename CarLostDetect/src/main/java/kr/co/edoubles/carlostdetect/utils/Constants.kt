@@ -10,12 +10,83 @@ const val TEXT_PADDING = 16
 // Serivce에서 쓰이는 상수들
 const val FOREGROUND_CHANNEL_ID="CarLostDetect_CHANNEL_ID"
 const val FOREGROUND_ID=100
+// 분실물 알림 (증거 사진 포함)
+const val LOST_NOTIFICATION_ID=101
 
 const val LOCAL_VIDEO_TRACK_ID="localVideoTrack"
+
+// 스트리밍용 캡처 해상도 (탐지 해상도와 독립적으로 변경 가능)
 const val CAPTURE_WIDTH=640
 const val CAPTURE_HEIGHT=480
 const val CAPTURE_FPS=30
 
+// 소비자 별 최대 fps / 긴 변 최대 크기 (스트리밍은 VideoSource 에서, 미리보기는 FrameFanout 에서 적용)
+const val STREAM_FPS=30
+const val PREVIEW_FPS=15
+const val PREVIEW_MAX_SIDE=640
+
+// 탐지용 프레임의 긴 변 최대 크기 (cropAndScale 로 읽기 전에 축소), ROI 사용 시에는 더 크게
+const val DETECT_FRAME_MAX_SIDE=320
+const val DETECT_ROI_FRAME_MAX_SIDE=640
+
+// 프레임 당 추론할 최대 ROI 수 (나머지는 다음 프레임에 차례로), ROI 사용 중 전체 프레임으로 추론해 Heatmap 을 학습할 주기 (추론 횟수)
+const val DETECT_ROIS_PER_FRAME=2
+const val DETECT_ROI_LEARN_INTERVAL=30
+
+// 모델 입력 크기 (Letterbox 기준)
+const val DETECT_INPUT_WIDTH=320
+const val DETECT_INPUT_HEIGHT=320
+
+// 탐지 모델 관련 상수 (assets 기준)
+const val DETECT_MODEL_NAME="model.tflite"
+const val DETECT_QUANT_MODEL_NAME="model_quant.tflite"
+// Label 파일 (assets 에 있으면 사용, 없으면 모델 Metadata 에 포함된 Label 사용)
+const val DETECT_LABEL_NAME="labelmap.txt"
+
+// Interpreter Backend 모델 후보 (앞에서부터 존재하는 모델 사용)
+val DETECT_MODEL_CANDIDATES = listOf(DETECT_QUANT_MODEL_NAME, DETECT_MODEL_NAME)
+const val DETECT_NUM_THREADS=4
+const val DETECT_WARMUP_RUNS=3
+
+// 장면 변화가 없을 때 이전 탐지 결과를 재사용할 최대 시간
+const val SCENE_MAX_RESULT_AGE=10_000L
+
+// 물체 추적 관련 상수 (연속 TRACK_CONFIRM_HITS 번 탐지되면 확정, TRACK_RETIRE_MISSES 번 놓치면 제거)
+const val TRACK_IOU_THRESHOLD=0.3f
+const val TRACK_CONFIRM_HITS=2
+const val TRACK_RETIRE_MISSES=3
+const val TRACK_MAX_PREDICT_MS=1_000L
+
+// Data Channel 탐지 메시지 관련 상수 (Keyframe 없이 보낼 최대 프레임 수, 같은 Box 로 볼 좌표 차이 비율)
+const val DETECT_KEYFRAME_INTERVAL=20
+const val DETECT_BOX_TOLERANCE=0.005f
+
+// 센서 (문 / 좌석) 기반 캡처 제어 관련 상수
+const val CAPTURE_LOW_FPS=5
+const val DETECT_LOW_RATE_INTERVAL=5_000L
+const val CAPTURE_IDLE_TIMEOUT=60_000L
+const val POST_EXIT_CHECK_TIME=10_000L
+
+// 분실물 증거 사진 관련 상수 (보관할 최근 탐지 프레임 수, JPEG 품질, Box 주변 여백 비율)
+const val EVIDENCE_RING_SIZE=8
+const val EVIDENCE_JPEG_QUALITY=85
+const val EVIDENCE_CROP_MARGIN=0.2f
+
+// 탐지 Journal 관련 상수 (filesDir 아래 폴더, Segment 크기 / 최대 개수, 대기 Record 수)
+const val JOURNAL_DIR="journal"
+const val JOURNAL_SEGMENT_SIZE=1 shl 20
+const val JOURNAL_MAX_SEGMENTS=16
+const val JOURNAL_QUEUE_SIZE=32
+
+// CAN 신호 수집 관련 상수 (debounce 시간, 신호 별 저장할 변화 수)
+const val CAN_DEBOUNCE_TIME=200L
+const val CAN_HISTORY_SIZE=256
+
 enum class BoardingStatus {
     BEFORE, DURING, AFTER
+}
+
+// 카메라 / 탐지 동작 단계 (OFF : 정지, ACTIVE : 최대 주기, LOW_RATE : 주행 중 저속)
+enum class CaptureMode {
+    OFF, ACTIVE, LOW_RATE
 }
\ No newline at end of file
@@ -0,0 +1,53 @@
+package kr.co.edoubles.carlostdetect.utils
+
+import android.content.Context
+import android.util.Log
+import androidx.core.content.edit
+import com.google.gson.Gson
+import kr.co.edoubles.carlostdetect.detect.DetectionRoi
+
+/**
+ * Roi preferences
+ * 기기 별 탐지 영역 (ROI) 설정을 SharedPreferences 에 JSON 으로 저장 / 로드하는 Utility
+ */
+object RoiPreferences {
+
+    private const val TAG = "RoiPreferences"
+    private const val PREFERENCES_NAME = "SharedPreferences_roi"
+    private const val KEY_ROIS = "rois"
+
+    private val gson = Gson()
+
+    /**
+     * 저장된 JSON 형식 (Gson 은 Kotlin null 안전성을 지키지 않으므로 모든 값을 nullable 로 읽은 뒤 확인)
+     */
+    private class StoredRoi(val name: String?, val polygon: FloatArray?)
+
+    fun load(context: Context): List<DetectionRoi> {
+        val json = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+            .getString(KEY_ROIS, null) ?: return emptyList()
+
+        return try {
+            gson.fromJson(json, Array<StoredRoi?>::class.java)?.mapNotNull { stored ->
+                val name = stored?.name
+                val polygon = stored?.polygon
+                // 이름이 없거나 꼭짓점이 3개 미만 / 짝이 맞지 않는 항목은 무시
+                if (name == null || polygon == null || polygon.size < 6 || polygon.size % 2 != 0) {
+                    null
+                } else {
+                    DetectionRoi(name, polygon)
+                }
+            } ?: emptyList()
+        } catch (e: Exception) {
+            // 형식이 깨진 설정이면 전체 프레임 탐지로 동작
+            Log.e(TAG, "ROI 설정을 읽지 못함 : " + e.message)
+            emptyList()
+        }
+    }
+
+    fun save(context: Context, rois: List<DetectionRoi>) {
+        context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE).edit {
+            putString(KEY_ROIS, gson.toJson(rois))
+        }
+    }
+}
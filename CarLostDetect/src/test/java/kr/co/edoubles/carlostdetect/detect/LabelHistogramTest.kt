@@ -0,0 +1,92 @@
+package kr.co.edoubles.carlostdetect.detect
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/**
+ * LabelHistogram / LabelRegistry 단위 테스트
+ */
+class LabelHistogramTest {
+
+    private val registry = LabelRegistry(listOf("person", "cup", "phone"))
+
+    @Test
+    fun registry_assignsStableIds() {
+        assertEquals(0, registry.idOf("person"))
+        assertEquals(2, registry.idOf("phone"))
+        assertEquals(3, registry.idOf("bag"))
+        assertEquals(3, registry.idOf("bag"))
+        assertEquals("bag", registry.labelOf(3))
+        assertEquals(4, registry.size)
+    }
+
+    @Test
+    fun add_countsPerLabelAndGrowsCapacity() {
+        val histogram = LabelHistogram(1)
+        histogram.add(1)
+        histogram.add(1)
+        histogram.add(200, 3)
+
+        assertEquals(2, histogram.count(1))
+        assertEquals(3, histogram.count(200))
+        assertEquals(0, histogram.count(0))
+        assertEquals(0, histogram.count(-1))
+        assertEquals(5, histogram.total)
+        assertTrue(histogram.contains(200))
+        assertFalse(histogram.contains(2))
+    }
+
+    @Test
+    fun clear_resetsCounts() {
+        val histogram = LabelHistogram()
+        histogram.add(2, 4)
+        histogram.clear()
+
+        assertTrue(histogram.isEmpty)
+        assertEquals(0, histogram.count(2))
+        assertEquals(0, histogram.total)
+    }
+
+    @Test
+    fun setDifference_keepsOnlyAddedItems() {
+        val before = LabelHistogram()
+        before.add(registry.idOf("person"))
+        before.add(registry.idOf("cup"))
+
+        val after = LabelHistogram()
+        after.add(registry.idOf("cup"), 2)
+        after.add(registry.idOf("phone"))
+
+        val lost = LabelHistogram()
+        lost.add(registry.idOf("person"), 5)
+        lost.setDifference(after, before)
+
+        assertEquals(0, lost.count(registry.idOf("person")))
+        assertEquals(1, lost.count(registry.idOf("cup")))
+        assertEquals(1, lost.count(registry.idOf("phone")))
+        assertEquals(2, lost.total)
+        assertEquals(listOf("cup", "phone"), lost.labels(registry))
+        assertEquals("cup phone ", lost.appendLabels(StringBuilder(), registry).toString())
+    }
+
+    @Test
+    fun mergeAndCopyFrom_sumHistograms() {
+        val first = LabelHistogram()
+        first.add(1, 2)
+        val second = LabelHistogram()
+        second.add(1)
+        second.add(2)
+
+        val merged = LabelHistogram()
+        merged.add(0)
+        merged.copyFrom(first)
+        merged.merge(second)
+
+        assertEquals(0, merged.count(0))
+        assertEquals(3, merged.count(1))
+        assertEquals(1, merged.count(2))
+        assertEquals(4, merged.total)
+    }
+}
@@ -0,0 +1,157 @@
+package kr.co.edoubles.carlostdetect.detect
+
+import android.graphics.RectF
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+import org.tensorflow.lite.support.label.Category
+import org.tensorflow.lite.task.vision.detector.Detection
+
+/**
+ * ObjectTracker 단위 테스트
+ * 서비스와 같이 제외 Label 이 빠진 (filtered) 결과만 전달한다
+ */
+@RunWith(RobolectricTestRunner::class)
+class ObjectTrackerTest {
+
+    private val tracker = ObjectTracker(
+        iouThreshold = 0.3f,
+        confirmHits = 2,
+        retireMisses = 3,
+        maxPredictMs = 1_000L
+    )
+    private val registry = LabelRegistry()
+    private val ids = IntArray(8)
+
+    private fun detection(label: String, left: Float, top: Float, right: Float, bottom: Float): Detection {
+        return Detection.create(RectF(left, top, right, bottom), listOf(Category(label, 0.8f)))
+    }
+
+    private fun confirmedLabels(): LabelHistogram {
+        return LabelHistogram().also { tracker.appendConfirmed(it, registry) }
+    }
+
+    @Test
+    fun track_isConfirmedAfterConsecutiveHits() {
+        val cup = detection("cup", 10f, 10f, 50f, 50f)
+
+        tracker.update(listOf(cup), 0L)
+        assertEquals(0, tracker.confirmedCount())
+
+        tracker.update(listOf(cup), 100L)
+        assertEquals(1, tracker.confirmedCount())
+        assertEquals(1, confirmedLabels().count(registry.idOf("cup")))
+    }
+
+    @Test
+    fun unconfirmedTrack_isDroppedOnFirstMiss() {
+        tracker.update(listOf(detection("cup", 10f, 10f, 50f, 50f)), 0L)
+        tracker.update(emptyList(), 100L)
+        tracker.update(listOf(detection("cup", 10f, 10f, 50f, 50f)), 200L)
+
+        // 다시 처음부터 확정해야 함
+        assertEquals(0, tracker.confirmedCount())
+    }
+
+    @Test
+    fun confirmedTrack_survivesMissesUntilRetired() {
+        val cup = detection("cup", 10f, 10f, 50f, 50f)
+        tracker.update(listOf(cup), 0L)
+        tracker.update(listOf(cup), 100L)
+
+        // 필터링으로 빈 결과 / null 이 와도 한두 번의 누락으로는 상태가 바뀌지 않음
+        tracker.update(emptyList(), 200L)
+        tracker.update(null, 300L)
+        assertEquals(1, tracker.confirmedCount())
+
+        tracker.update(emptyList(), 400L)
+        assertEquals(0, tracker.confirmedCount())
+    }
+
+    @Test
+    fun trackId_followsMovingObject() {
+        tracker.update(listOf(detection("cup", 10f, 10f, 50f, 50f)), 0L)
+        assertEquals(1, tracker.copyTrackIds(ids))
+        val id = ids[0]
+
+        tracker.update(listOf(detection("cup", 14f, 12f, 54f, 52f)), 100L)
+        tracker.update(listOf(detection("cup", 18f, 14f, 58f, 54f)), 200L)
+        assertEquals(1, tracker.copyTrackIds(ids))
+        assertEquals(id, ids[0])
+        assertEquals(1, tracker.confirmedCount())
+    }
+
+    @Test
+    fun trackIds_followResultOrder() {
+        val cup = detection("cup", 10f, 10f, 50f, 50f)
+        val phone = detection("phone", 100f, 100f, 140f, 160f)
+        tracker.update(listOf(cup, phone), 0L)
+        tracker.copyTrackIds(ids)
+        val cupId = ids[0]
+        val phoneId = ids[1]
+        assertNotEquals(cupId, phoneId)
+
+        // 결과 순서가 바뀌어도 같은 물체는 같은 ID
+        tracker.update(listOf(phone, cup), 100L)
+        assertEquals(2, tracker.copyTrackIds(ids))
+        assertEquals(phoneId, ids[0])
+        assertEquals(cupId, ids[1])
+    }
+
+    @Test
+    fun differentLabels_areNotMatched() {
+        tracker.update(listOf(detection("cup", 10f, 10f, 50f, 50f)), 0L)
+        tracker.copyTrackIds(ids)
+        val cupId = ids[0]
+
+        tracker.update(listOf(detection("bottle", 10f, 10f, 50f, 50f)), 100L)
+        tracker.copyTrackIds(ids)
+        assertNotEquals(cupId, ids[0])
+        assertEquals(0, tracker.confirmedCount())
+    }
+
+    @Test
+    fun filteredLabels_neverReachConfirmedHistogram() {
+        // 제외 Label (person) 을 뺀 결과만 전달되는 서비스와 같은 흐름
+        val excluded = registry.toBitSet(listOf("person"))
+        val frames = listOf(
+            listOf(detection("person", 0f, 0f, 100f, 200f), detection("cup", 10f, 10f, 50f, 50f)),
+            listOf(detection("person", 2f, 0f, 102f, 200f), detection("cup", 10f, 10f, 50f, 50f))
+        )
+        frames.forEachIndexed { index, results ->
+            val filtered = results.filter { !excluded.get(registry.idOf(it.categories[0].label)) }
+            tracker.update(filtered, index * 100L)
+        }
+
+        val histogram = confirmedLabels()
+        assertEquals(0, histogram.count(registry.idOf("person")))
+        assertEquals(1, histogram.count(registry.idOf("cup")))
+        assertEquals(1, histogram.total)
+    }
+
+    @Test
+    fun predict_outputsOnlyConfirmedTracks() {
+        tracker.update(listOf(detection("cup", 10f, 10f, 50f, 50f)), 0L)
+        tracker.update(listOf(detection("cup", 10f, 10f, 50f, 50f), detection("phone", 100f, 100f, 140f, 160f)), 100L)
+
+        val out = ArrayList<Detection>()
+        tracker.predict(150L, out)
+        assertEquals(1, out.size)
+        assertEquals("cup", out[0].categories[0].label)
+        assertTrue(out[0].boundingBox.width() > 0f)
+    }
+
+    @Test
+    fun clear_removesTracksAndIds() {
+        val cup = detection("cup", 10f, 10f, 50f, 50f)
+        tracker.update(listOf(cup), 0L)
+        tracker.update(listOf(cup), 100L)
+
+        tracker.clear()
+        assertEquals(0, tracker.confirmedCount())
+        assertEquals(0, tracker.copyTrackIds(ids))
+    }
+}
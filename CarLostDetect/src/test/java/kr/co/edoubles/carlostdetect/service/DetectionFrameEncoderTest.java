@@ -0,0 +1,193 @@
+package kr.co.edoubles.carlostdetect.service;
+
+import android.graphics.RectF;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.tensorflow.lite.support.label.Category;
+import org.tensorflow.lite.task.vision.detector.Detection;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import kr.co.edoubles.carlostdetect.detect.LabelRegistry;
+
+import static org.junit.Assert.*;
+
+/**
+ * DetectionFrameEncoder 의 Keyframe / Delta 생성 단위 테스트
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DetectionFrameEncoderTest {
+
+    private static final String PEER = "peer";
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 100;
+    private static final int KEY_HEADER = 6;
+    private static final int DELTA_HEADER = 11;
+    private static final int ITEM_SIZE = 13;
+
+    /**
+     * 보낸 메시지를 복사해 두는 Sink (accept 가 false 면 전송 실패로 응답)
+     */
+    private static final class RecordingSink implements DetectionFrameEncoder.Sink {
+        final List<ByteBuffer> messages = new ArrayList<>();
+        boolean accept = true;
+
+        @Override
+        public boolean send(String peerName, ByteBuffer message, boolean state) {
+            ByteBuffer copy = ByteBuffer.allocate(message.remaining()).order(ByteOrder.LITTLE_ENDIAN);
+            copy.put(message.duplicate()).flip();
+            messages.add(copy);
+            return accept;
+        }
+
+        List<ByteBuffer> ofType(byte type) {
+            List<ByteBuffer> result = new ArrayList<>();
+            for (ByteBuffer message : messages) {
+                if (message.get(0) == type) {
+                    result.add(message);
+                }
+            }
+            return result;
+        }
+
+        ByteBuffer last() {
+            return messages.get(messages.size() - 1);
+        }
+    }
+
+    private final LabelRegistry registry = new LabelRegistry(Arrays.asList("cup", "phone"));
+    private final DetectionFrameEncoder encoder = new DetectionFrameEncoder(registry, 30, 0.02f);
+    private final RecordingSink sink = new RecordingSink();
+
+    private static Detection detection(String label, float left, float top, float right, float bottom) {
+        return Detection.create(new RectF(left, top, right, bottom),
+                Collections.singletonList(new Category(label, 0.9f)));
+    }
+
+    private void publish(List<Detection> results, int... trackIds) {
+        encoder.publish(results, trackIds, WIDTH, HEIGHT, Collections.singletonList(PEER), sink);
+    }
+
+    private void ack(int seq) {
+        ByteBuffer message = ByteBuffer.allocate(5).order(ByteOrder.LITTLE_ENDIAN);
+        message.put(DetectionFrameEncoder.TYPE_ACK).putInt(seq).flip();
+        assertTrue(encoder.onMessage(PEER, message));
+    }
+
+    private static int seqOf(ByteBuffer message) {
+        return message.getInt(1);
+    }
+
+    @Test
+    public void firstPublish_sendsLabelsThenKeyframe() {
+        Detection cup = detection("cup", 10, 10, 30, 30);
+        Detection phone = detection("phone", 50, 50, 70, 90);
+        publish(Arrays.asList(cup, phone), 7, 9);
+
+        assertEquals(2, sink.ofType(DetectionFrameEncoder.TYPE_LABEL).size());
+        ByteBuffer key = sink.last();
+        assertEquals(DetectionFrameEncoder.TYPE_KEY, key.get(0));
+        assertEquals(0, seqOf(key));
+        assertEquals(2, key.get(5));
+        assertEquals(KEY_HEADER + 2 * ITEM_SIZE, key.remaining());
+        assertEquals(7, key.getShort(KEY_HEADER));
+        assertEquals(registry.idOf("cup"), key.getShort(KEY_HEADER + 2));
+        assertEquals(9, key.getShort(KEY_HEADER + ITEM_SIZE));
+        assertEquals(registry.idOf("phone"), key.getShort(KEY_HEADER + ITEM_SIZE + 2));
+    }
+
+    @Test
+    public void unchangedState_isSkipped() {
+        Detection cup = detection("cup", 10, 10, 30, 30);
+        publish(Collections.singletonList(cup), 1);
+        int sent = sink.messages.size();
+
+        publish(Collections.singletonList(detection("cup", 10.5f, 10, 30.5f, 30)), 1);
+        assertEquals(sent, sink.messages.size());
+    }
+
+    @Test
+    public void reorderedResults_areMatchedByTrackId() {
+        Detection cup = detection("cup", 10, 10, 30, 30);
+        Detection phone = detection("phone", 50, 50, 70, 90);
+        publish(Arrays.asList(cup, phone), 1, 2);
+        ack(0);
+        int sent = sink.messages.size();
+
+        // 순서만 바뀐 결과는 같은 상태
+        publish(Arrays.asList(phone, cup), 2, 1);
+        assertEquals(sent, sink.messages.size());
+    }
+
+    @Test
+    public void movedObject_sendsDeltaWithOnlyThatTrack() {
+        Detection cup = detection("cup", 10, 10, 30, 30);
+        Detection phone = detection("phone", 50, 50, 70, 90);
+        publish(Arrays.asList(cup, phone), 1, 2);
+        ack(0);
+
+        // 앞에 새 물체가 끼어들어도 phone 은 그대로로 판단해야 함
+        Detection newCup = detection("cup", 80, 5, 95, 20);
+        Detection movedCup = detection("cup", 30, 10, 50, 30);
+        publish(Arrays.asList(newCup, movedCup, phone), 3, 1, 2);
+
+        ByteBuffer delta = sink.last();
+        assertEquals(DetectionFrameEncoder.TYPE_DELTA, delta.get(0));
+        assertEquals(1, seqOf(delta));
+        assertEquals(0, delta.getInt(5));
+        assertEquals(2, delta.get(9));
+        assertEquals(0, delta.get(10));
+        assertEquals(DELTA_HEADER + 2 * ITEM_SIZE, delta.remaining());
+        assertEquals(3, delta.getShort(DELTA_HEADER));
+        assertEquals(1, delta.getShort(DELTA_HEADER + ITEM_SIZE));
+    }
+
+    @Test
+    public void vanishedObject_isSentAsRemovedTrackId() {
+        Detection cup = detection("cup", 10, 10, 30, 30);
+        Detection phone = detection("phone", 50, 50, 70, 90);
+        publish(Arrays.asList(cup, phone), 1, 2);
+        ack(0);
+
+        publish(Collections.singletonList(phone), 2);
+
+        ByteBuffer delta = sink.last();
+        assertEquals(DetectionFrameEncoder.TYPE_DELTA, delta.get(0));
+        assertEquals(0, delta.get(9));
+        assertEquals(1, delta.get(10));
+        assertEquals(DELTA_HEADER + 2, delta.remaining());
+        assertEquals(1, delta.getShort(DELTA_HEADER));
+    }
+
+    @Test
+    public void unackedBase_fallsBackToKeyframe() {
+        publish(Collections.singletonList(detection("cup", 10, 10, 30, 30)), 1);
+        publish(Collections.singletonList(detection("cup", 40, 10, 60, 30)), 1);
+
+        ByteBuffer key = sink.last();
+        assertEquals(DetectionFrameEncoder.TYPE_KEY, key.get(0));
+        assertEquals(1, seqOf(key));
+    }
+
+    @Test
+    public void failedLabel_isSentAgain() {
+        sink.accept = false;
+        publish(Collections.singletonList(detection("cup", 10, 10, 30, 30)), 1);
+        assertEquals(1, sink.ofType(DetectionFrameEncoder.TYPE_LABEL).size());
+
+        sink.accept = true;
+        publish(Collections.singletonList(detection("cup", 40, 10, 60, 30)), 1);
+        assertEquals(2, sink.ofType(DetectionFrameEncoder.TYPE_LABEL).size());
+
+        // 성공한 뒤에는 다시 보내지 않음
+        publish(Collections.singletonList(detection("cup", 70, 10, 90, 30)), 1);
+        assertEquals(2, sink.ofType(DetectionFrameEncoder.TYPE_LABEL).size());
+    }
+}
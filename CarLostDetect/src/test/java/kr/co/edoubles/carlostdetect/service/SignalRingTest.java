@@ -0,0 +1,69 @@
+package kr.co.edoubles.carlostdetect.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * CanSignalIngestor.SignalRing (확정된 신호 변화 기록) 단위 테스트
+ */
+public class SignalRingTest {
+
+    @Test
+    public void emptyRing_returnsDefault() {
+        CanSignalIngestor.SignalRing ring = new CanSignalIngestor.SignalRing(4);
+        assertEquals(0, ring.size());
+        assertTrue(ring.stateAt(100, true));
+        assertFalse(ring.stateAt(100, false));
+        assertTrue(ring.latest(true));
+    }
+
+    @Test
+    public void stateAt_findsLastEdgeAtOrBeforeTime() {
+        CanSignalIngestor.SignalRing ring = new CanSignalIngestor.SignalRing(8);
+        ring.append(100, true);
+        ring.append(200, false);
+        ring.append(300, true);
+
+        assertTrue(ring.stateAt(100, false));
+        assertTrue(ring.stateAt(150, false));
+        assertFalse(ring.stateAt(200, true));
+        assertFalse(ring.stateAt(299, true));
+        assertTrue(ring.stateAt(1_000, false));
+        assertTrue(ring.latest(false));
+    }
+
+    @Test
+    public void stateAt_beforeFirstEdgeIsOppositeOfIt() {
+        CanSignalIngestor.SignalRing ring = new CanSignalIngestor.SignalRing(8);
+        ring.append(100, true);
+        assertFalse(ring.stateAt(50, true));
+    }
+
+    @Test
+    public void overwrittenEdges_areForgotten() {
+        // 용량 4 : 6 개를 넣으면 가장 오래된 2 개는 덮어씀
+        CanSignalIngestor.SignalRing ring = new CanSignalIngestor.SignalRing(4);
+        for (int i = 0; i < 6; i++) {
+            ring.append((i + 1) * 100, i % 2 == 0);
+        }
+        assertEquals(4, ring.size());
+
+        // 남은 기록 : 300 true, 400 false, 500 true, 600 false
+        assertTrue(ring.stateAt(350, false));
+        assertFalse(ring.stateAt(450, true));
+        assertFalse(ring.stateAt(650, true));
+        // 남은 가장 오래된 변화 이전은 그 반대 상태로 추정
+        assertFalse(ring.stateAt(250, true));
+        assertFalse(ring.latest(true));
+    }
+
+    @Test
+    public void capacity_roundsUpToPowerOfTwo() {
+        CanSignalIngestor.SignalRing ring = new CanSignalIngestor.SignalRing(3);
+        for (int i = 0; i < 10; i++) {
+            ring.append(i, true);
+        }
+        assertEquals(4, ring.size());
+    }
+}
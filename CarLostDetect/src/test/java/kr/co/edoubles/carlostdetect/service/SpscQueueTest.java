@@ -0,0 +1,86 @@
+package kr.co.edoubles.carlostdetect.service;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * SpscQueue 단위 테스트
+ */
+public class SpscQueueTest {
+
+    @Test
+    public void capacity_roundsUpToPowerOfTwo() {
+        assertEquals(2, new SpscQueue<Integer>(1).capacity());
+        assertEquals(4, new SpscQueue<Integer>(3).capacity());
+        assertEquals(4, new SpscQueue<Integer>(4).capacity());
+        assertEquals(8, new SpscQueue<Integer>(5).capacity());
+    }
+
+    @Test
+    public void offerAndPoll_keepOrderAndRejectWhenFull() {
+        SpscQueue<Integer> queue = new SpscQueue<>(4);
+        assertNull(queue.poll());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void offerAndPoll_wrapAround() {
+        SpscQueue<Integer> queue = new SpscQueue<>(4);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(queue.offer(i));
+            assertTrue(queue.offer(i + 1000));
+            assertEquals(Integer.valueOf(i), queue.poll());
+            assertEquals(Integer.valueOf(i + 1000), queue.poll());
+        }
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void producerAndConsumerThreads_deliverEveryElementInOrder() throws InterruptedException {
+        final int count = 200_000;
+        SpscQueue<Integer> queue = new SpscQueue<>(64);
+        AtomicReference<String> failure = new AtomicReference<>();
+
+        Thread consumer = new Thread(() -> {
+            int expected = 0;
+            while (expected < count) {
+                Integer value = queue.poll();
+                if (value == null) {
+                    Thread.yield();
+                    continue;
+                }
+                if (value != expected) {
+                    failure.set("expected " + expected + " but was " + value);
+                    return;
+                }
+                expected++;
+            }
+        });
+        consumer.start();
+
+        for (int i = 0; i < count; i++) {
+            while (!queue.offer(i)) {
+                Thread.yield();
+            }
+        }
+        consumer.join(10_000);
+
+        assertFalse(consumer.isAlive());
+        assertNull(failure.get());
+        assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,166 @@
+package kr.co.edoubles.webrtc;
+
+import org.webrtc.DataChannel;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+/**
+ * DataChannel 하나의 전송을 담당하는 Class (bufferedAmount 기준 Backpressure)
+ * <p>
+ * 상태 메시지 (탐지 결과처럼 최신 값만 의미 있는 메시지) 는 bufferedAmount 가 highWatermark 를 넘으면
+ * 보내지 않고 대기 slot 하나에만 보관하며, 새 상태가 오면 이전 대기 상태를 덮어쓴다 (drop).
+ * bufferedAmount 가 lowWatermark 아래로 내려가면 drain Executor 에서 대기 상태를 보낸다.
+ * 일반 메시지 (이벤트 / 명령) 는 혼잡 여부와 관계없이 바로 보낸다.
+ * <p>
+ * DataChannel 호출은 Signaling Thread 로 전달되므로, Signaling Thread 에서 오는 콜백
+ * (onBufferedAmountChange) 에서는 lock 을 잡지 않고 drain 작업만 넘긴다.
+ */
+public class DataChannelSender {
+
+    /**
+     * Peer 별 전송 통계
+     */
+    public static final class Stats {
+        public final long sentMessages;
+        public final long droppedMessages;
+        public final long bufferedAmount;
+        public final boolean congested;
+
+        Stats(long sentMessages, long droppedMessages, long bufferedAmount, boolean congested) {
+            this.sentMessages = sentMessages;
+            this.droppedMessages = droppedMessages;
+            this.bufferedAmount = bufferedAmount;
+            this.congested = congested;
+        }
+
+        @Override
+        public String toString() {
+            return "sent: " + sentMessages + ", dropped: " + droppedMessages
+                    + ", buffered: " + bufferedAmount + (congested ? " (congested)" : "");
+        }
+    }
+
+    final DataChannel dataChannel;
+    private final long highWatermark;
+    private final long lowWatermark;
+    private final Executor drainExecutor;
+    private final Runnable drainRunnable = this::drain;
+
+    private boolean disposed = false;
+    private volatile boolean congested = false;
+
+    // 혼잡할 때 보관하는 최신 상태 메시지 (하나만 유지)
+    private ByteBuffer pending = ByteBuffer.allocate(0);
+    private boolean pendingBinary;
+    private boolean hasPending = false;
+
+    // 통계 값들
+    private long sentMessages = 0;
+    private long droppedMessages = 0;
+
+    DataChannelSender(DataChannel dataChannel, long highWatermark, long lowWatermark, Executor drainExecutor) {
+        this.dataChannel = dataChannel;
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.drainExecutor = drainExecutor;
+    }
+
+    synchronized boolean isOpen() {
+        return !disposed && dataChannel.state() == DataChannel.State.OPEN;
+    }
+
+    /**
+     * 일반 메시지 전송 (혼잡해도 바로 보냄, data 는 position ~ limit 를 읽고 position 을 되돌림)
+     */
+    synchronized boolean send(ByteBuffer data, boolean binary) {
+        if (!isOpen()) {
+            droppedMessages++;
+            return false;
+        }
+        return sendNow(data, binary);
+    }
+
+    /**
+     * 상태 메시지 전송 (혼잡하면 대기 slot 의 이전 상태를 덮어씀)
+     *
+     * @return 보냈거나 대기 slot 에 보관했으면 true
+     */
+    synchronized boolean sendState(ByteBuffer data, boolean binary) {
+        if (!isOpen()) {
+            droppedMessages++;
+            return false;
+        }
+        if (!congested && dataChannel.bufferedAmount() > highWatermark) {
+            congested = true;
+        }
+        if (!congested) {
+            return sendNow(data, binary);
+        }
+
+        if (hasPending) {
+            droppedMessages++;
+        }
+        int length = data.remaining();
+        if (pending.capacity() < length) {
+            pending = ByteBuffer.allocate(length);
+        }
+        int position = data.position();
+        pending.clear();
+        pending.put(data);
+        pending.flip();
+        data.position(position);
+        pendingBinary = binary;
+        hasPending = true;
+        return true;
+    }
+
+    private boolean sendNow(ByteBuffer data, boolean binary) {
+        int position = data.position();
+        boolean sent = dataChannel.send(new DataChannel.Buffer(data, binary));
+        data.position(position);
+        if (sent) {
+            sentMessages++;
+        } else {
+            droppedMessages++;
+        }
+        return sent;
+    }
+
+    /**
+     * Signaling Thread 에서 호출 - 혼잡이 풀렸으면 drain 작업 요청 (lock 을 잡지 않음)
+     */
+    void onBufferedAmountChange(long bufferedAmount) {
+        if (congested && bufferedAmount <= lowWatermark) {
+            drainExecutor.execute(drainRunnable);
+        }
+    }
+
+    private synchronized void drain() {
+        if (!congested || disposed || dataChannel.bufferedAmount() > lowWatermark) {
+            return;
+        }
+        congested = false;
+        if (hasPending) {
+            hasPending = false;
+            if (isOpen()) {
+                sendNow(pending, pendingBinary);
+            }
+        }
+    }
+
+    synchronized Stats getStats() {
+        long bufferedAmount = disposed ? 0 : dataChannel.bufferedAmount();
+        return new Stats(sentMessages, droppedMessages, bufferedAmount, congested);
+    }
+
+    synchronized void dispose() {
+        if (disposed) {
+            return;
+        }
+        disposed = true;
+        hasPending = false;
+        dataChannel.close();
+        dataChannel.dispose();
+    }
+}
@@ -0,0 +1,90 @@
+package kr.co.edoubles.webrtc;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.webrtc.IceCandidate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 짧은 시간 동안 모은 ICE 후보 묶음 (MQTT 메시지 하나로 전송)
+ * <p>
+ * 메시지 형식 : {"candidates":[{"candidate":"...","sdpMid":"0","sdpMLineIndex":0}, ...],"end":false}
+ * end 가 true 면 보낸 쪽의 후보 수집이 끝났다는 뜻으로, 받는 쪽은 더 기다리지 않아도 된다.
+ */
+public class IceCandidateBatch {
+
+    private static final String KEY_CANDIDATES = "candidates";
+    private static final String KEY_CANDIDATE = "candidate";
+    private static final String KEY_SDP_MID = "sdpMid";
+    private static final String KEY_SDP_MLINE_INDEX = "sdpMLineIndex";
+    private static final String KEY_END = "end";
+
+    private final List<IceCandidate> candidates = new ArrayList<>();
+    private boolean end = false;
+
+    void add(IceCandidate candidate) {
+        candidates.add(candidate);
+    }
+
+    void markEnd() {
+        end = true;
+    }
+
+    public List<IceCandidate> getCandidates() {
+        return candidates;
+    }
+
+    /**
+     * 후보 수집 완료 표시 (end-of-candidates)
+     */
+    public boolean isEnd() {
+        return end;
+    }
+
+    public String toJson() {
+        try {
+            JSONArray array = new JSONArray();
+            for (IceCandidate candidate : candidates) {
+                JSONObject item = new JSONObject();
+                item.put(KEY_CANDIDATE, candidate.sdp);
+                item.put(KEY_SDP_MID, candidate.sdpMid);
+                item.put(KEY_SDP_MLINE_INDEX, candidate.sdpMLineIndex);
+                array.put(item);
+            }
+            JSONObject json = new JSONObject();
+            json.put(KEY_CANDIDATES, array);
+            json.put(KEY_END, end);
+            return json.toString();
+        } catch (JSONException e) {
+            // 문자열 / 숫자만 넣으므로 발생하지 않음
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 수신한 메시지 해석 (JSON 이 아니면 이전 형식인 후보 문자열 하나로 처리)
+     */
+    public static IceCandidateBatch fromJson(String payload) throws JSONException {
+        IceCandidateBatch batch = new IceCandidateBatch();
+        String trimmed = payload.trim();
+        if (!trimmed.startsWith("{")) {
+            batch.add(new IceCandidate("0", 0, trimmed));
+            return batch;
+        }
+
+        JSONObject json = new JSONObject(trimmed);
+        JSONArray array = json.optJSONArray(KEY_CANDIDATES);
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject item = array.getJSONObject(i);
+                batch.add(new IceCandidate(item.optString(KEY_SDP_MID, "0"),
+                        item.optInt(KEY_SDP_MLINE_INDEX, 0), item.getString(KEY_CANDIDATE)));
+            }
+        }
+        batch.end = json.optBoolean(KEY_END, false);
+        return batch;
+    }
+}
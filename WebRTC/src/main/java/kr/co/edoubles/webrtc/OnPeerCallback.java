@@ -1,15 +1,21 @@
 package kr.co.edoubles.webrtc;
 
-import org.webrtc.IceCandidate;
 import org.webrtc.RtpTransceiver;
 import org.webrtc.SessionDescription;
 
+import java.nio.ByteBuffer;
+
 public interface OnPeerCallback {
-    void onIceCandidate(String peerName, IceCandidate iceCandidate);
+    // 짧은 시간 동안 모은 ICE 후보 묶음 (수집이 끝나면 end 표시와 함께 바로 전달)
+    void onIceCandidates(String peerName, IceCandidateBatch batch);
     void onOfferCreated(String peerName, SessionDescription sessionDescription);
     void onAnswerCreated(String peerName, SessionDescription sessionDescription);
 
+    // Control Channel (순서 / 전달 보장) 수신
     void onMessage(String receivedMessage);
     void onMessage(String receivedMessage, String peerName);
+    void onBinaryMessage(ByteBuffer data, String peerName);
+    // Telemetry Channel (순서 없음, 유실 가능) 수신
+    void onTelemetryMessage(ByteBuffer data, String peerName);
     void onTrack(RtpTransceiver transceiver, String peerName);
 }
@@ -3,6 +3,7 @@ package kr.co.edoubles.webrtc;
 import android.content.Context;
 import android.util.Log;
 
+import org.json.JSONException;
 import org.webrtc.DataChannel;
 import org.webrtc.DefaultVideoDecoderFactory;
 import org.webrtc.DefaultVideoEncoderFactory;
@@ -14,24 +15,88 @@ import org.webrtc.MediaStreamTrack;
 import org.webrtc.PeerConnection;
 import org.webrtc.PeerConnectionFactory;
 import org.webrtc.RtpReceiver;
+import org.webrtc.RtpSender;
 import org.webrtc.RtpTransceiver;
 import org.webrtc.SdpObserver;
 import org.webrtc.SessionDescription;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Peer 별 PeerConnection / DataChannel 관리 Class
+ * <p>
+ * MQTT 콜백, WebRTC Signaling Thread, 탐지 Thread 에서 동시에 호출되므로 조회용 Map 은 ConcurrentHashMap 을 사용한다.
+ * Peer 하나에 대한 Signaling 작업 (생성 / SDP / ICE / 삭제) 은 Peer 별 SerialExecutor 에서 순서대로 실행되고,
+ * 서로 다른 Peer 의 작업은 동시에 실행될 수 있다.
+ * Data 전송은 Executor 를 거치지 않고 호출한 Thread 에서 바로 수행하므로 Signaling 작업과 서로 기다리지 않는다.
+ * <p>
+ * Peer 마다 DataChannel 을 두 개 연다. 명령 / 이벤트는 순서와 전달이 보장되는 Control Channel 로,
+ * 탐지 결과처럼 최신 값만 의미 있는 상태는 순서 / 재전송이 없는 Telemetry Channel 로 보내
+ * 유실된 이전 상태가 새 상태를 막지 않도록 한다 (Head-of-line blocking 방지).
+ * <p>
+ * 영상은 Simulcast Layer 로 보내고, 주기적으로 Viewer 별 대역폭 추정 값을 읽어 SimulcastController 가
+ * Viewer 마다 하나의 Layer 만 활성화한다 (전체 인코딩 비용은 ENCODE_BUDGET 이하로 제한).
+ * <p>
+ * ICE 후보는 ICE_BATCH_WINDOW_MS 동안 모아 IceCandidateBatch 하나로 전달하고,
+ * 수집이 끝나면 (COMPLETE) 남은 후보와 함께 end-of-candidates 표시를 바로 전달한다.
+ */
 public class PeerManager {
     private static final String TAG = "PeerManager";
 
+    public static final String CONTROL_CHANNEL_LABEL = "control";
+    public static final String TELEMETRY_CHANNEL_LABEL = "telemetry";
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 1000;
+    private static final long BITRATE_ADAPT_INTERVAL_MS = 2000;
+    private static final long ICE_BATCH_WINDOW_MS = 100;
+    // 원본 해상도 인코딩 1.5 개 분량 (예: 원본 1 + 1/2 해상도 2)
+    private static final double ENCODE_BUDGET = 1.5;
+    // DataChannel bufferedAmount 기준 혼잡 판단 값
+    private static final long SEND_HIGH_WATERMARK = 256 * 1024;
+    private static final long SEND_LOW_WATERMARK = 64 * 1024;
+
     private final Context context;
 
     private final EglBase eglBase;
     private PeerConnectionFactory peerConnectionFactory;
-    private HashMap<String, PeerConnection> peerConnections = new HashMap<>();
-    private HashMap<String, DataChannel> dataChannels = new HashMap<>();
+    private final Map<String, PeerConnection> peerConnections = new ConcurrentHashMap<>();
+    private final Map<String, DataChannelSender> controlChannels = new ConcurrentHashMap<>();
+    private final Map<String, DataChannelSender> telemetryChannels = new ConcurrentHashMap<>();
+    // 혼잡이 풀린 Channel 의 대기 상태 전송 (Signaling Thread 와 분리)
+    private final ExecutorService drainExecutor =
+            Executors.newSingleThreadExecutor(r -> new Thread(r, "DataDrainThread"));
+
+    // Peer 별 Signaling 작업 순서 보장 (공용 Thread Pool 위의 SerialExecutor)
+    private final ExecutorService signalingExecutor =
+            Executors.newCachedThreadPool(r -> new Thread(r, "PeerSignalingThread"));
+    private final Map<String, SerialExecutor> peerExecutors = new ConcurrentHashMap<>();
+
+    // Viewer 별 영상 Sender 와 현재 활성 Layer
+    private final SimulcastController simulcastController = new SimulcastController(ENCODE_BUDGET);
+    private final Map<String, RtpSender> videoSenders = new ConcurrentHashMap<>();
+    private final Map<String, Integer> activeLayers = new ConcurrentHashMap<>();
+
+    // Peer 별 아직 보내지 않은 ICE 후보
+    private final Map<String, IceCandidateBatch> pendingCandidates = new ConcurrentHashMap<>();
+    // 상대가 end-of-candidates 를 보내 후보 수집이 끝난 Peer
+    private final Set<String> remoteGatheringComplete = ConcurrentHashMap.newKeySet();
+
+    // Bitrate 조절 / ICE 후보 묶음 전송 예약
+    private final ScheduledExecutorService timerExecutor =
+            Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "PeerTimerThread"));
 
     private final OnPeerCallback onPeerCallback;
 
@@ -41,6 +106,8 @@ public class PeerManager {
         this.onPeerCallback = onPeerCallback;
 
         createPeerConnectionFactory();
+        timerExecutor.scheduleWithFixedDelay(this::adaptBitrates, BITRATE_ADAPT_INTERVAL_MS,
+                BITRATE_ADAPT_INTERVAL_MS, TimeUnit.MILLISECONDS);
     }
 
     public void createPeerConnectionFactory() {
@@ -62,18 +129,36 @@ public class PeerManager {
         return peerConnectionFactory;
     }
 
+    /**
+     * Peer 의 SerialExecutor 에서 Signaling 작업 실행
+     * (등록과 Executor 제거가 같은 Map entry 에서 원자적으로 일어나도록 compute 안에서 등록)
+     */
+    private void runOnPeer(String peerName, Runnable task) {
+        peerExecutors.compute(peerName, (name, executor) -> {
+            SerialExecutor serialExecutor = executor != null ? executor : new SerialExecutor(signalingExecutor);
+            serialExecutor.execute(task);
+            return serialExecutor;
+        });
+    }
+
     public void createPeerConnection(String peerName) {
-        if (peerConnections.containsKey(peerName)) {
-            deletePeerConnection(peerName);
-        }
+        runOnPeer(peerName, () -> {
+            if (peerConnections.containsKey(peerName)) {
+                closePeerConnection(peerName);
+            }
 
-        PeerConnection.RTCConfiguration config = new PeerConnection.RTCConfiguration(Collections.singletonList(new PeerConnection.IceServer("stun:stun.l.google.com:19302")));
-        config.sdpSemantics = PeerConnection.SdpSemantics.UNIFIED_PLAN;
+            PeerConnection.RTCConfiguration config = new PeerConnection.RTCConfiguration(Collections.singletonList(new PeerConnection.IceServer("stun:stun.l.google.com:19302")));
+            config.sdpSemantics = PeerConnection.SdpSemantics.UNIFIED_PLAN;
 
-        PeerConnection peerConnection = peerConnectionFactory.createPeerConnection(config, new CustomPeerConnectionObserver(peerName));
+            PeerConnection peerConnection = peerConnectionFactory.createPeerConnection(config, new CustomPeerConnectionObserver(peerName));
+            if (peerConnection == null) {
+                Log.e(TAG, "PeerConnection 생성 실패: " + peerName);
+                return;
+            }
 
-        peerConnections.put(peerName, peerConnection);
-        Log.d(TAG, "PeerConnection 생성됨: " + peerName);
+            peerConnections.put(peerName, peerConnection);
+            Log.d(TAG, "PeerConnection 생성됨: " + peerName);
+        });
     }
 
     private class CustomPeerConnectionObserver implements PeerConnection.Observer {
@@ -91,6 +176,11 @@ public class PeerManager {
         @Override
         public void onIceConnectionChange(PeerConnection.IceConnectionState iceConnectionState) {
             Log.d(TAG, "onIceConnectionChange : " + iceConnectionState.toString());
+            if (iceConnectionState == PeerConnection.IceConnectionState.FAILED) {
+                // 상대 후보가 더 오지 않는 상태면 새 후보로 복구될 수 없음
+                Log.e(TAG, "ICE 연결 실패 : " + peerName
+                        + (isRemoteGatheringComplete(peerName) ? " (상대 후보 수집 완료)" : " (상대 후보 대기 중)"));
+            }
         }
 
         @Override
@@ -101,12 +191,47 @@ public class PeerManager {
         @Override
         public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
             Log.d(TAG, "onIceGahteringChange : " + iceGatheringState.toString());
+            if (iceGatheringState == PeerConnection.IceGatheringState.COMPLETE) {
+                // 남은 후보와 end-of-candidates 표시를 기다리지 않고 바로 전송
+                // (앞선 묶음보다 먼저 나가지 않도록 같은 Timer Thread 에서 전송)
+                pendingCandidates.compute(peerName, (name, batch) -> {
+                    IceCandidateBatch current = batch != null ? batch : new IceCandidateBatch();
+                    current.markEnd();
+                    return current;
+                });
+                try {
+                    timerExecutor.execute(() -> flushCandidates(peerName));
+                } catch (RejectedExecutionException e) {
+                    // 종료 중이면 보내지 않음
+                }
+            }
         }
 
         @Override
         public void onIceCandidate(IceCandidate iceCandidate) {
             Log.d(TAG, "IceCandidate 생성됨 : " + iceCandidate);
-            onPeerCallback.onIceCandidate(peerName, iceCandidate);
+            if (iceCandidate == null) {
+                onIceGatheringChange(PeerConnection.IceGatheringState.COMPLETE);
+                return;
+            }
+            boolean[] created = new boolean[1];
+            pendingCandidates.compute(peerName, (name, batch) -> {
+                IceCandidateBatch current = batch;
+                if (current == null) {
+                    current = new IceCandidateBatch();
+                    created[0] = true;
+                }
+                current.add(iceCandidate);
+                return current;
+            });
+            // 묶음의 첫 후보가 들어온 시점부터 ICE_BATCH_WINDOW_MS 뒤에 전송
+            if (created[0]) {
+                try {
+                    timerExecutor.schedule(() -> flushCandidates(peerName), ICE_BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // 종료 중이면 보내지 않음
+                }
+            }
         }
 
         @Override
@@ -126,33 +251,18 @@ public class PeerManager {
 
         @Override
         public void onDataChannel(DataChannel dataChannel) {
-            Log.d(TAG, "Data Channel 수신함");
+            Log.d(TAG, "Data Channel 수신함 : " + dataChannel.label());
 
-            dataChannel.registerObserver(new DataChannel.Observer() {
-                @Override
-                public void onBufferedAmountChange(long l) {
-                    // 필요 시 구현
-                }
+            // Label 이 없거나 모르는 Channel 은 Control Channel 로 취급 (Channel 하나만 여는 Peer 호환)
+            boolean telemetry = TELEMETRY_CHANNEL_LABEL.equals(dataChannel.label());
+            DataChannelSender sender = createSender(dataChannel);
+            dataChannel.registerObserver(new ChannelObserver(peerName, sender, true, telemetry));
 
-                @Override
-                public void onStateChange() {
-                    // 필요 시 구현
-                }
-
-                @Override
-                public void onMessage(DataChannel.Buffer buffer) {
-                    ByteBuffer data = buffer.data;
-                    byte[] bytes = new byte[data.remaining()];
-                    data.get(bytes);
-                    String receivedMessage = new String(bytes, StandardCharsets.UTF_8);
-                    onPeerCallback.onMessage(receivedMessage, peerName);
-                }
-            });
-
-            if (dataChannels.containsKey(peerName)) {
-                deleteDataChannel(peerName);
+            // 이전 Channel 은 Peer 의 Signaling 순서에 맞춰 해제
+            DataChannelSender previous = (telemetry ? telemetryChannels : controlChannels).put(peerName, sender);
+            if (previous != null) {
+                runOnPeer(peerName, previous::dispose);
             }
-            dataChannels.put(peerName, dataChannel);
         }
 
         @Override
@@ -172,11 +282,40 @@ public class PeerManager {
         }
     }
 
+    /**
+     * 모아 둔 ICE 후보 묶음 전달 (이미 보냈으면 아무것도 하지 않음)
+     */
+    private void flushCandidates(String peerName) {
+        IceCandidateBatch batch = pendingCandidates.remove(peerName);
+        if (batch != null) {
+            Log.d(TAG, "IceCandidate 묶음 전송 : " + peerName + " - " + batch.getCandidates().size()
+                    + (batch.isEnd() ? " (end)" : ""));
+            onPeerCallback.onIceCandidates(peerName, batch);
+        }
+    }
+
     public PeerConnection getPeerConnection(String peerName) {
         return peerConnections.get(peerName);
     }
 
     public void deletePeerConnection(String peerName) {
+        runOnPeer(peerName, () -> {
+            closePeerConnection(peerName);
+            // 뒤에 대기 중인 작업이 없으면 Peer 의 SerialExecutor 도 제거 (Viewer 가 오갈 때 Map 이 커지지 않도록)
+            peerExecutors.computeIfPresent(peerName,
+                    (name, executor) -> executor.hasPendingTasks() ? executor : null);
+        });
+    }
+
+    /**
+     * Peer 의 SerialExecutor 에서 호출
+     */
+    private void closePeerConnection(String peerName) {
+        pendingCandidates.remove(peerName);
+        remoteGatheringComplete.remove(peerName);
+        videoSenders.remove(peerName);
+        activeLayers.remove(peerName);
+        simulcastController.remove(peerName);
         PeerConnection peerConnection = peerConnections.remove(peerName);
         if (peerConnection != null) {
             peerConnection.close();
@@ -185,11 +324,27 @@ public class PeerManager {
         }
     }
 
+    /**
+     * 대기 중인 Signaling 작업을 정리한 뒤 모든 Peer 와 Factory 해제 (호출 Thread 에서 바로 수행)
+     */
     public void deleteAllPeers() {
-        if (peerConnectionFactory != null) {
-            peerConnectionFactory.dispose();
+        timerExecutor.shutdownNow();
+        for (SerialExecutor executor : peerExecutors.values()) {
+            executor.clear();
+        }
+        peerExecutors.clear();
+        signalingExecutor.shutdown();
+        try {
+            if (!signalingExecutor.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.e(TAG, "Signaling 작업이 시간 안에 끝나지 않음");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
 
+        // DataChannel -> PeerConnection -> Factory 순서로 해제
+        deleteAllDataChannels();
+        drainExecutor.shutdownNow();
         for (PeerConnection peerConnection : peerConnections.values()) {
             if (peerConnection != null) {
                 peerConnection.close();
@@ -197,180 +352,371 @@ public class PeerManager {
             }
         }
         peerConnections.clear();
+        pendingCandidates.clear();
+        remoteGatheringComplete.clear();
+        videoSenders.clear();
+        activeLayers.clear();
+        simulcastController.clear();
+
+        if (peerConnectionFactory != null) {
+            peerConnectionFactory.dispose();
+            peerConnectionFactory = null;
+        }
         eglBase.release();
         Log.d(TAG, "모든 PeerConnection 삭제됨");
     }
 
+    /**
+     * Control (순서 / 전달 보장) 과 Telemetry (순서 없음, 재전송 없음) Channel 생성
+     */
     public void createDataChannel(String peerName) {
-        if (!peerConnections.containsKey(peerName)) {
-            Log.e(TAG, "DataChannel 생성 불가; PeerConnection이 존재하지 않음: " + peerName);
-            return;
-        }
+        runOnPeer(peerName, () -> {
+            PeerConnection peerConnection = peerConnections.get(peerName);
+            if (peerConnection == null) {
+                Log.e(TAG, "DataChannel 생성 불가; PeerConnection이 존재하지 않음: " + peerName);
+                return;
+            }
 
-        DataChannel.Init dcInit = new DataChannel.Init();
-        dcInit.ordered = true;
+            DataChannel.Init controlInit = new DataChannel.Init();
+            controlInit.ordered = true;
+            openDataChannel(peerConnection, peerName, CONTROL_CHANNEL_LABEL, controlInit, false);
+
+            DataChannel.Init telemetryInit = new DataChannel.Init();
+            telemetryInit.ordered = false;
+            telemetryInit.maxRetransmits = 0;
+            openDataChannel(peerConnection, peerName, TELEMETRY_CHANNEL_LABEL, telemetryInit, true);
+        });
+    }
 
+    /**
+     * Peer 의 SerialExecutor 에서 호출
+     */
+    private void openDataChannel(PeerConnection peerConnection, String peerName, String label,
+                                 DataChannel.Init init, boolean telemetry) {
         DataChannel dataChannel;
 
         try {
-            dataChannel = peerConnections.get(peerName).createDataChannel(peerName, dcInit);
+            dataChannel = peerConnection.createDataChannel(label, init);
         } catch (Exception e){
-            Log.e(TAG, "Data Channel 생성 실패", e);
+            Log.e(TAG, "Data Channel 생성 실패 : " + label, e);
             return;
         }
 
-        dataChannel.registerObserver(new DataChannel.Observer() {
-            @Override
-            public void onBufferedAmountChange(long l) {
-                // 필요 시 구현
-            }
+        DataChannelSender sender = createSender(dataChannel);
+        dataChannel.registerObserver(new ChannelObserver(peerName, sender, false, telemetry));
 
-            @Override
-            public void onStateChange() {
-                // 필요 시 구현
-            }
+        DataChannelSender previous = (telemetry ? telemetryChannels : controlChannels).put(peerName, sender);
+        if (previous != null) {
+            previous.dispose();
+        }
 
-            @Override
-            public void onMessage(DataChannel.Buffer buffer) {
-                ByteBuffer data = buffer.data;
-                byte[] bytes = new byte[data.remaining()];
-                data.get(bytes);
-                String receivedMessage = new String(bytes, StandardCharsets.UTF_8);
+        Log.d(TAG, "Data Channel 생성 성공 : " + label);
+    }
+
+    private DataChannelSender createSender(DataChannel dataChannel) {
+        return new DataChannelSender(dataChannel, SEND_HIGH_WATERMARK, SEND_LOW_WATERMARK, drainExecutor);
+    }
+
+    /**
+     * DataChannel 수신 / bufferedAmount 변화 처리 (Signaling Thread 에서 호출됨)
+     */
+    private class ChannelObserver implements DataChannel.Observer {
+        private final String peerName;
+        private final DataChannelSender sender;
+        // 상대가 연 Channel 이면 Peer 이름과 함께 전달
+        private final boolean remote;
+        private final boolean telemetry;
+
+        ChannelObserver(String peerName, DataChannelSender sender, boolean remote, boolean telemetry) {
+            this.peerName = peerName;
+            this.sender = sender;
+            this.remote = remote;
+            this.telemetry = telemetry;
+        }
+
+        @Override
+        public void onBufferedAmountChange(long previousAmount) {
+            sender.onBufferedAmountChange(sender.dataChannel.bufferedAmount());
+        }
+
+        @Override
+        public void onStateChange() {
+            // 필요 시 구현
+        }
+
+        @Override
+        public void onMessage(DataChannel.Buffer buffer) {
+            ByteBuffer data = buffer.data;
+            if (telemetry) {
+                onPeerCallback.onTelemetryMessage(data, peerName);
+                return;
+            }
+            if (buffer.binary) {
+                onPeerCallback.onBinaryMessage(data, peerName);
+                return;
+            }
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            String receivedMessage = new String(bytes, StandardCharsets.UTF_8);
+            if (remote) {
+                onPeerCallback.onMessage(receivedMessage, peerName);
+            } else {
                 onPeerCallback.onMessage(receivedMessage);
             }
-        });
+        }
+    }
 
-        deleteDataChannel(peerName);
-        dataChannels.putIfAbsent(peerName, dataChannel);
+    /**
+     * 모든 열린 Control Channel 에 전송 (한 번만 UTF-8 로 변환한 버퍼를 모든 Peer 가 공유)
+     */
+    public void sendData(String data) {
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(data);
+        for (DataChannelSender sender : controlChannels.values()) {
+            sender.send(buffer, false);
+        }
+    }
 
-        Log.d(TAG, "Data Channel 생성 성공");
+    /**
+     * Peer 하나의 Control Channel 에 Binary 메시지 전송 (혼잡해도 바로 보냄, data 는 호출 후 재사용 가능)
+     *
+     * @return Data Channel 이 열려 있어 전송했으면 true
+     */
+    public boolean sendData(String peerName, ByteBuffer data) {
+        DataChannelSender sender = controlChannels.get(peerName);
+        return sender != null && sender.send(data, true);
     }
 
-    public void sendData(String data) {
-        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
-
-        for (String peerName : dataChannels.keySet()) {
-            DataChannel dataChannel = dataChannels.get(peerName);
-            if (dataChannel.state() == DataChannel.State.OPEN) {
-                ByteBuffer buffer = ByteBuffer.wrap(bytes);
-                DataChannel.Buffer dataBuffer = new DataChannel.Buffer(buffer, false);
-                dataChannel.send(dataBuffer);
-                Log.d(TAG, "데이터 전송됨: " + data + " -> " + peerName);
+    /**
+     * Peer 하나의 Telemetry Channel 에 Binary 상태 메시지 전송
+     * (혼잡하면 최신 상태 하나만 보관했다가 혼잡이 풀리면 보냄, Telemetry Channel 이 없는 Peer 는 Control Channel 사용)
+     *
+     * @return 보냈거나 보관했으면 true
+     */
+    public boolean sendState(String peerName, ByteBuffer data) {
+        DataChannelSender sender = telemetryChannels.get(peerName);
+        if (sender == null || !sender.isOpen()) {
+            sender = controlChannels.get(peerName);
+        }
+        return sender != null && sender.sendState(data, true);
+    }
+
+    /**
+     * Control Channel 이 열려 있는 Peer 목록
+     */
+    public List<String> getOpenDataChannels() {
+        List<String> peerNames = new ArrayList<>(controlChannels.size());
+        for (Map.Entry<String, DataChannelSender> entry : controlChannels.entrySet()) {
+            if (entry.getValue().isOpen()) {
+                peerNames.add(entry.getKey());
             }
         }
+        return peerNames;
     }
 
+    /**
+     * Channel 별 전송 / drop 횟수와 대기 중인 bufferedAmount (key : peerName/label)
+     */
+    public Map<String, DataChannelSender.Stats> getChannelStats() {
+        Map<String, DataChannelSender.Stats> stats = new HashMap<>();
+        for (Map.Entry<String, DataChannelSender> entry : controlChannels.entrySet()) {
+            stats.put(entry.getKey() + "/" + CONTROL_CHANNEL_LABEL, entry.getValue().getStats());
+        }
+        for (Map.Entry<String, DataChannelSender> entry : telemetryChannels.entrySet()) {
+            stats.put(entry.getKey() + "/" + TELEMETRY_CHANNEL_LABEL, entry.getValue().getStats());
+        }
+        return stats;
+    }
 
     public void deleteDataChannel(String peerName){
-        DataChannel dataChannel = dataChannels.remove(peerName);
-        if (dataChannel != null) {
-            dataChannel.close();
-            dataChannel.dispose();
-            Log.d(TAG, "DataChannel 삭제됨: " + peerName);
+        runOnPeer(peerName, () -> {
+            disposeDataChannel(controlChannels.remove(peerName), peerName, CONTROL_CHANNEL_LABEL);
+            disposeDataChannel(telemetryChannels.remove(peerName), peerName, TELEMETRY_CHANNEL_LABEL);
+        });
+    }
+
+    private static void disposeDataChannel(DataChannelSender sender, String peerName, String label) {
+        if (sender != null) {
+            Log.d(TAG, "DataChannel 전송 통계: " + peerName + "/" + label + " - " + sender.getStats());
+            sender.dispose();
+            Log.d(TAG, "DataChannel 삭제됨: " + peerName + "/" + label);
         }
     }
 
     public void deleteAllDataChannels() {
-        for (DataChannel dataChannel : dataChannels.values()) {
-            if (dataChannel != null) {
-                dataChannel.close();
-                dataChannel.dispose();
-            }
+        for (DataChannelSender sender : controlChannels.values()) {
+            sender.dispose();
         }
-        dataChannels.clear();
+        for (DataChannelSender sender : telemetryChannels.values()) {
+            sender.dispose();
+        }
+        controlChannels.clear();
+        telemetryChannels.clear();
         Log.d(TAG, "모든 DataChannel 삭제됨");
     }
 
     public void addTrack(String peerName, MediaStreamTrack track){
-        PeerConnection peerConnection = peerConnections.get(peerName);
-        if (peerConnection != null) {
-            peerConnection.addTrack(track);
+        runOnPeer(peerName, () -> {
+            PeerConnection peerConnection = peerConnections.get(peerName);
+            if (peerConnection == null) {
+                return;
+            }
+            if (MediaStreamTrack.VIDEO_TRACK_KIND.equals(track.kind())) {
+                // 영상은 Simulcast Layer 로 보내고 Viewer 대역폭에 맞춰 Layer 선택
+                RtpTransceiver transceiver = peerConnection.addTransceiver(track, SimulcastController.createInit());
+                videoSenders.put(peerName, transceiver.getSender());
+            } else {
+                peerConnection.addTrack(track);
+            }
             Log.d(TAG, "트랙 추가됨: " + peerName);
-        }
+        });
     }
 
-    public void createOffer(String peerName) {
-        PeerConnection peerConnection = peerConnections.get(peerName);
-        if (peerConnection == null) {
-            Log.e(TAG, "Offer 생성 불가; PeerConnection이 존재하지 않음: " + peerName);
-            return;
+    /**
+     * Bitrate Thread 에서 주기적으로 호출 - Viewer 별 대역폭 추정 값을 갱신하고 Layer 재선택
+     */
+    private void adaptBitrates() {
+        for (String peerName : videoSenders.keySet()) {
+            runOnPeer(peerName, () -> {
+                PeerConnection peerConnection = peerConnections.get(peerName);
+                if (peerConnection != null) {
+                    peerConnection.getStats(report -> simulcastController.onStats(peerName, report));
+                }
+            });
         }
 
-        peerConnection.createOffer(new CustomSdpObserver("createOffer") {
-            @Override
-            public void onCreateSuccess(SessionDescription sessionDescription) {
-                super.onCreateSuccess(sessionDescription);
-                peerConnection.setLocalDescription(new CustomSdpObserver("setLocalDescription") {
-                    @Override
-                    public void onSetSuccess() {
-                        super.onSetSuccess();
-                        Log.d(TAG, "setLocalDescription 성공");
-                        onPeerCallback.onOfferCreated(peerName, sessionDescription);
-                    }
-                }, sessionDescription);
+        // 대역폭 추정 값은 이전 주기의 getStats 결과를 사용
+        Map<String, Integer> layers = simulcastController.selectLayers(videoSenders.keySet());
+        for (Map.Entry<String, Integer> entry : layers.entrySet()) {
+            String peerName = entry.getKey();
+            int layer = entry.getValue();
+            Integer current = activeLayers.get(peerName);
+            if (current != null && current == layer) {
+                continue;
             }
-        }, new MediaConstraints());
+            runOnPeer(peerName, () -> {
+                RtpSender sender = videoSenders.get(peerName);
+                if (sender == null) {
+                    return;
+                }
+                SimulcastController.applyLayer(sender, layer);
+                activeLayers.put(peerName, layer);
+                Log.d(TAG, "Layer 변경됨: " + peerName + " -> " + layer);
+            });
+        }
     }
 
-    public void createAnswer(String peerName) {
-        PeerConnection peerConnection = peerConnections.get(peerName);
-        if (peerConnection == null) {
-            Log.e(TAG, "Answer 생성 불가; PeerConnection이 존재하지 않음: " + peerName);
-            return;
-        }
+    public void createOffer(String peerName) {
+        runOnPeer(peerName, () -> {
+            PeerConnection peerConnection = peerConnections.get(peerName);
+            if (peerConnection == null) {
+                Log.e(TAG, "Offer 생성 불가; PeerConnection이 존재하지 않음: " + peerName);
+                return;
+            }
 
-        peerConnection.createAnswer(new CustomSdpObserver("createAnswer") {
-            @Override
-            public void onCreateSuccess(SessionDescription sessionDescription) {
-                super.onCreateSuccess(sessionDescription);
-                peerConnection.setLocalDescription(new CustomSdpObserver("setLocalDescription") {
-                    @Override
-                    public void onSetSuccess() {
-                        super.onSetSuccess();
-                        Log.d(TAG, "setLocalDescription 성공");
-                        onPeerCallback.onAnswerCreated(peerName, sessionDescription);
-                    }
-                }, sessionDescription);
+            peerConnection.createOffer(new CustomSdpObserver("createOffer") {
+                @Override
+                public void onCreateSuccess(SessionDescription sessionDescription) {
+                    super.onCreateSuccess(sessionDescription);
+                    peerConnection.setLocalDescription(new CustomSdpObserver("setLocalDescription") {
+                        @Override
+                        public void onSetSuccess() {
+                            super.onSetSuccess();
+                            Log.d(TAG, "setLocalDescription 성공");
+                            onPeerCallback.onOfferCreated(peerName, sessionDescription);
+                        }
+                    }, sessionDescription);
+                }
+            }, new MediaConstraints());
+        });
+    }
+
+    public void createAnswer(String peerName) {
+        runOnPeer(peerName, () -> {
+            PeerConnection peerConnection = peerConnections.get(peerName);
+            if (peerConnection == null) {
+                Log.e(TAG, "Answer 생성 불가; PeerConnection이 존재하지 않음: " + peerName);
+                return;
             }
-        }, new MediaConstraints());
+
+            peerConnection.createAnswer(new CustomSdpObserver("createAnswer") {
+                @Override
+                public void onCreateSuccess(SessionDescription sessionDescription) {
+                    super.onCreateSuccess(sessionDescription);
+                    peerConnection.setLocalDescription(new CustomSdpObserver("setLocalDescription") {
+                        @Override
+                        public void onSetSuccess() {
+                            super.onSetSuccess();
+                            Log.d(TAG, "setLocalDescription 성공");
+                            onPeerCallback.onAnswerCreated(peerName, sessionDescription);
+                        }
+                    }, sessionDescription);
+                }
+            }, new MediaConstraints());
+        });
     }
 
     public void setRemoteDescription(String peerName, String sdp, SessionDescription.Type type) {
-        PeerConnection peerConnection = peerConnections.get(peerName);
-        if (peerConnection == null) {
-            Log.e(TAG, "setRemoteDescription 불가; PeerConnection이 존재하지 않음: " + peerName);
-            return;
-        }
+        runOnPeer(peerName, () -> {
+            PeerConnection peerConnection = peerConnections.get(peerName);
+            if (peerConnection == null) {
+                Log.e(TAG, "setRemoteDescription 불가; PeerConnection이 존재하지 않음: " + peerName);
+                return;
+            }
 
-        SessionDescription remoteSdp = new SessionDescription(type, sdp);
+            SessionDescription remoteSdp = new SessionDescription(type, sdp);
 
-        peerConnection.setRemoteDescription(new CustomSdpObserver("setRemoteDescription") {
-            @Override
-            public void onSetSuccess() {
-                super.onSetSuccess();
-                Log.d(TAG, "setRemoteDescription 성공");
-                if (type == SessionDescription.Type.OFFER) {
-                    createAnswer(peerName);
+            peerConnection.setRemoteDescription(new CustomSdpObserver("setRemoteDescription") {
+                @Override
+                public void onSetSuccess() {
+                    super.onSetSuccess();
+                    Log.d(TAG, "setRemoteDescription 성공");
+                    if (type == SessionDescription.Type.OFFER) {
+                        createAnswer(peerName);
+                    }
                 }
-            }
-        }, remoteSdp);
+            }, remoteSdp);
+        });
     }
 
-    public void addRemoteCandidate(String peerName, String candidateString) {
-        IceCandidate candidate = new IceCandidate("0", 0, candidateString);
-        PeerConnection peerConnection;
-        if(peerConnections.containsKey(peerName)){
-            peerConnection = peerConnections.get(peerName);
-        } else {
-            return;
-        }
+    /**
+     * 상대가 보낸 ICE 후보 묶음 추가 (sdpMid / sdpMLineIndex 는 메시지 값을 사용)
+     */
+    public void addRemoteCandidate(String peerName, String payload) {
+        runOnPeer(peerName, () -> {
+            PeerConnection peerConnection = peerConnections.get(peerName);
+            if (peerConnection == null) {
+                return;
+            }
 
-        try{
-            peerConnection.addIceCandidate(candidate);
-            Log.d(TAG, "SUCCESS addRemoteCandidate : " + candidateString);
-        } catch (Exception e){
-            Log.e(TAG, "FAILED addRemoteCandidate : " + candidateString);
-        }
+            IceCandidateBatch batch;
+            try {
+                batch = IceCandidateBatch.fromJson(payload);
+            } catch (JSONException e) {
+                Log.e(TAG, "ICE 후보 메시지 해석 실패 : " + payload, e);
+                return;
+            }
+
+            for (IceCandidate candidate : batch.getCandidates()) {
+                try {
+                    peerConnection.addIceCandidate(candidate);
+                    Log.d(TAG, "SUCCESS addRemoteCandidate : " + candidate.sdp);
+                } catch (Exception e) {
+                    Log.e(TAG, "FAILED addRemoteCandidate : " + candidate.sdp);
+                }
+            }
+            if (batch.isEnd()) {
+                // Android WebRTC API 에는 end-of-candidates 를 넘길 함수가 없으므로 Peer 별 상태로만 기록
+                remoteGatheringComplete.add(peerName);
+                Log.d(TAG, "상대 ICE 후보 수집 완료 : " + peerName);
+            }
+        });
+    }
+
+    /**
+     * 상대가 end-of-candidates 를 보내 더 받을 ICE 후보가 없는지
+     */
+    public boolean isRemoteGatheringComplete(String peerName) {
+        return remoteGatheringComplete.contains(peerName);
     }
 
     private abstract class CustomSdpObserver implements SdpObserver {
@@ -0,0 +1,67 @@
+package kr.co.edoubles.webrtc;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 공용 Executor 위에서 작업을 넣은 순서대로 하나씩 실행하는 가벼운 Executor
+ * <p>
+ * 전용 Thread 를 만들지 않으므로 Peer 마다 하나씩 만들어도 비용이 거의 없고,
+ * 서로 다른 SerialExecutor 의 작업은 공용 Executor 에서 동시에 실행될 수 있다.
+ */
+class SerialExecutor implements Executor {
+
+    private static final String TAG = "SerialExecutor";
+
+    private final Executor executor;
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private Runnable active;
+
+    SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public synchronized void execute(Runnable task) {
+        tasks.offer(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                Log.e(TAG, "작업 실행 중 오류 발생", e);
+            } finally {
+                scheduleNext();
+            }
+        });
+        if (active == null) {
+            scheduleNext();
+        }
+    }
+
+    private synchronized void scheduleNext() {
+        active = tasks.poll();
+        if (active != null) {
+            try {
+                executor.execute(active);
+            } catch (RejectedExecutionException e) {
+                // 공용 Executor 가 종료된 뒤 (예: Native 콜백에서 늦게 들어온 작업) 는 실행하지 않고 버림
+                Log.d(TAG, "종료된 Executor 의 작업 무시됨");
+                tasks.clear();
+                active = null;
+            }
+        }
+    }
+
+    /**
+     * 아직 실행을 시작하지 않은 작업이 있는지 (실행 중인 작업은 포함하지 않음)
+     */
+    synchronized boolean hasPendingTasks() {
+        return !tasks.isEmpty();
+    }
+
+    synchronized void clear() {
+        tasks.clear();
+    }
+}
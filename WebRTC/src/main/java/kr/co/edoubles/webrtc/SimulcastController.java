@@ -0,0 +1,158 @@
+package kr.co.edoubles.webrtc;
+
+import android.util.Log;
+
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+import org.webrtc.RtpParameters;
+import org.webrtc.RtpSender;
+import org.webrtc.RtpTransceiver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Viewer 별 Simulcast Layer 선택 Class
+ * <p>
+ * 영상 송신은 Layer 3 개 (원본 / 1/2 / 1/4 해상도) 로 설정하고, Viewer 마다 대역폭 추정 값
+ * (candidate-pair 의 availableOutgoingBitrate) 에 맞는 Layer 하나만 활성화한다.
+ * 비활성 Layer 는 인코딩하지 않으므로, 모든 Viewer 의 활성 Layer 비용 (원본 대비 픽셀 비율) 합이
+ * 기기 예산을 넘으면 가장 비싼 Layer 를 쓰는 Viewer 부터 한 단계씩 낮춘다.
+ */
+class SimulcastController {
+
+    private static final String TAG = "SimulcastController";
+
+    // Layer 0 이 가장 높은 화질
+    private static final String[] LAYER_RIDS = {"f", "h", "q"};
+    private static final double[] LAYER_SCALES = {1.0, 2.0, 4.0};
+    private static final int[] LAYER_MAX_BITRATES = {1_200_000, 500_000, 150_000};
+    private static final double[] LAYER_COSTS = {1.0, 0.25, 0.0625};
+
+    // 추정 대역폭 중 영상에 쓸 비율 / 추정 값이 없을 때 사용할 Layer
+    private static final double BANDWIDTH_HEADROOM = 0.85;
+    private static final int DEFAULT_LAYER = 1;
+
+    private final double encodeBudget;
+    private final Map<String, Double> estimates = new ConcurrentHashMap<>();
+
+    /**
+     * @param encodeBudget 모든 Viewer 의 활성 Layer 비용 합 최대값 (1.0 = 원본 해상도 인코딩 1 개)
+     */
+    SimulcastController(double encodeBudget) {
+        this.encodeBudget = encodeBudget;
+    }
+
+    /**
+     * 영상 Track 을 Simulcast Layer 로 보내는 Transceiver 설정 (처음에는 DEFAULT_LAYER 만 활성)
+     */
+    static RtpTransceiver.RtpTransceiverInit createInit() {
+        List<RtpParameters.Encoding> encodings = new ArrayList<>(LAYER_RIDS.length);
+        for (int i = 0; i < LAYER_RIDS.length; i++) {
+            RtpParameters.Encoding encoding = new RtpParameters.Encoding(LAYER_RIDS[i], i == DEFAULT_LAYER, LAYER_SCALES[i]);
+            encoding.maxBitrateBps = LAYER_MAX_BITRATES[i];
+            encodings.add(encoding);
+        }
+        return new RtpTransceiver.RtpTransceiverInit(RtpTransceiver.RtpTransceiverDirection.SEND_ONLY,
+                Collections.emptyList(), encodings);
+    }
+
+    /**
+     * getStats 결과에서 선택된 candidate-pair 의 송신 가능 대역폭을 찾아 저장
+     */
+    void onStats(String peerName, RTCStatsReport report) {
+        for (RTCStats stats : report.getStatsMap().values()) {
+            if (!"candidate-pair".equals(stats.getType())) {
+                continue;
+            }
+            Map<String, Object> members = stats.getMembers();
+            Object nominated = members.get("nominated");
+            Object bitrate = members.get("availableOutgoingBitrate");
+            if (Boolean.TRUE.equals(nominated) && bitrate instanceof Number) {
+                estimates.put(peerName, ((Number) bitrate).doubleValue());
+                return;
+            }
+        }
+    }
+
+    void remove(String peerName) {
+        estimates.remove(peerName);
+    }
+
+    void clear() {
+        estimates.clear();
+    }
+
+    /**
+     * Viewer 별 Layer 선택 (대역폭에 맞는 가장 높은 Layer 를 고른 뒤 기기 예산에 맞춰 낮춤)
+     */
+    Map<String, Integer> selectLayers(Collection<String> peerNames) {
+        Map<String, Integer> layers = new HashMap<>();
+        double totalCost = 0;
+        for (String peerName : peerNames) {
+            int layer = layerFor(estimates.get(peerName));
+            layers.put(peerName, layer);
+            totalCost += LAYER_COSTS[layer];
+        }
+
+        while (totalCost > encodeBudget) {
+            String target = null;
+            int targetLayer = LAYER_RIDS.length - 1;
+            for (Map.Entry<String, Integer> entry : layers.entrySet()) {
+                if (entry.getValue() < targetLayer) {
+                    target = entry.getKey();
+                    targetLayer = entry.getValue();
+                }
+            }
+            if (target == null) {
+                // 모두 가장 낮은 Layer 이면 더 줄일 수 없음
+                break;
+            }
+            layers.put(target, targetLayer + 1);
+            totalCost += LAYER_COSTS[targetLayer + 1] - LAYER_COSTS[targetLayer];
+        }
+        return layers;
+    }
+
+    private static int layerFor(Double estimate) {
+        if (estimate == null) {
+            return DEFAULT_LAYER;
+        }
+        double usable = estimate * BANDWIDTH_HEADROOM;
+        for (int i = 0; i < LAYER_MAX_BITRATES.length; i++) {
+            if (LAYER_MAX_BITRATES[i] <= usable) {
+                return i;
+            }
+        }
+        return LAYER_RIDS.length - 1;
+    }
+
+    /**
+     * Sender 에서 layer 만 활성화 (Peer 의 Signaling Thread 에서 호출)
+     */
+    static void applyLayer(RtpSender sender, int layer) {
+        RtpParameters parameters = sender.getParameters();
+        if (parameters == null || parameters.encodings.isEmpty()) {
+            return;
+        }
+        List<RtpParameters.Encoding> encodings = parameters.encodings;
+        if (encodings.size() == 1) {
+            // Codec 이 Simulcast 를 지원하지 않아 Layer 가 하나면 해상도 / Bitrate 로 대신 조절
+            encodings.get(0).active = true;
+            encodings.get(0).scaleResolutionDownBy = LAYER_SCALES[layer];
+            encodings.get(0).maxBitrateBps = LAYER_MAX_BITRATES[layer];
+        } else {
+            for (int i = 0; i < encodings.size(); i++) {
+                encodings.get(i).active = i == layer;
+            }
+        }
+        if (!sender.setParameters(parameters)) {
+            Log.e(TAG, "Layer 변경 실패 : " + LAYER_RIDS[layer]);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package kr.co.edoubles.webrtc;
+
+import org.json.JSONException;
+import org.junit.Test;
+import org.webrtc.IceCandidate;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * IceCandidateBatch 메시지 형식 단위 테스트
+ */
+public class IceCandidateBatchTest {
+
+    private static final String HOST = "candidate:1 1 udp 2122260223 192.168.0.10 50000 typ host";
+    private static final String SRFLX = "candidate:2 1 udp 1686052607 203.0.113.7 50001 typ srflx";
+
+    @Test
+    public void toJsonAndFromJson_roundTrip() throws JSONException {
+        IceCandidateBatch batch = new IceCandidateBatch();
+        batch.add(new IceCandidate("0", 0, HOST));
+        batch.add(new IceCandidate("1", 1, SRFLX));
+        batch.markEnd();
+
+        IceCandidateBatch parsed = IceCandidateBatch.fromJson(batch.toJson());
+        List<IceCandidate> candidates = parsed.getCandidates();
+        assertEquals(2, candidates.size());
+        assertEquals("0", candidates.get(0).sdpMid);
+        assertEquals(0, candidates.get(0).sdpMLineIndex);
+        assertEquals(HOST, candidates.get(0).sdp);
+        assertEquals("1", candidates.get(1).sdpMid);
+        assertEquals(1, candidates.get(1).sdpMLineIndex);
+        assertEquals(SRFLX, candidates.get(1).sdp);
+        assertTrue(parsed.isEnd());
+    }
+
+    @Test
+    public void endOnlyBatch_hasNoCandidates() throws JSONException {
+        IceCandidateBatch batch = new IceCandidateBatch();
+        batch.markEnd();
+
+        IceCandidateBatch parsed = IceCandidateBatch.fromJson(batch.toJson());
+        assertTrue(parsed.getCandidates().isEmpty());
+        assertTrue(parsed.isEnd());
+    }
+
+    @Test
+    public void legacyPlainCandidate_isSingleCandidate() throws JSONException {
+        IceCandidateBatch parsed = IceCandidateBatch.fromJson("  " + HOST + "\n");
+
+        assertEquals(1, parsed.getCandidates().size());
+        IceCandidate candidate = parsed.getCandidates().get(0);
+        assertEquals("0", candidate.sdpMid);
+        assertEquals(0, candidate.sdpMLineIndex);
+        assertEquals(HOST, candidate.sdp);
+        assertFalse(parsed.isEnd());
+    }
+
+    @Test
+    public void missingFields_useDefaults() throws JSONException {
+        IceCandidateBatch parsed = IceCandidateBatch.fromJson("{\"candidates\":[{\"candidate\":\"" + HOST + "\"}]}");
+
+        assertEquals(1, parsed.getCandidates().size());
+        assertEquals("0", parsed.getCandidates().get(0).sdpMid);
+        assertEquals(0, parsed.getCandidates().get(0).sdpMLineIndex);
+        assertFalse(parsed.isEnd());
+    }
+
+    @Test(expected = JSONException.class)
+    public void candidateWithoutSdp_isRejected() throws JSONException {
+        IceCandidateBatch.fromJson("{\"candidates\":[{\"sdpMid\":\"0\"}],\"end\":false}");
+    }
+
+    @Test(expected = JSONException.class)
+    public void brokenJson_isRejected() throws JSONException {
+        IceCandidateBatch.fromJson("{\"candidates\":[");
+    }
+}
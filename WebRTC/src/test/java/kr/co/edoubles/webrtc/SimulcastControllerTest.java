@@ -0,0 +1,114 @@
+package kr.co.edoubles.webrtc;
+
+import org.junit.Test;
+import org.webrtc.RTCStats;
+import org.webrtc.RTCStatsReport;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * SimulcastController.selectLayers 단위 테스트 (Layer 0 : 원본, 1 : 1/2, 2 : 1/4)
+ */
+public class SimulcastControllerTest {
+
+    private static final double[] LAYER_COSTS = {1.0, 0.25, 0.0625};
+
+    private static RTCStatsReport report(double availableOutgoingBitrate, boolean nominated) {
+        Map<String, Object> members = new HashMap<>();
+        members.put("nominated", nominated);
+        members.put("availableOutgoingBitrate", availableOutgoingBitrate);
+        RTCStats stats = new RTCStats(0, "candidate-pair", "pair", members);
+        return new RTCStatsReport(0, Collections.singletonMap("pair", stats));
+    }
+
+    private static double totalCost(Map<String, Integer> layers) {
+        double total = 0;
+        for (int layer : layers.values()) {
+            total += LAYER_COSTS[layer];
+        }
+        return total;
+    }
+
+    @Test
+    public void noEstimate_usesDefaultLayer() {
+        SimulcastController controller = new SimulcastController(2.0);
+        Map<String, Integer> layers = controller.selectLayers(Arrays.asList("a", "b"));
+
+        assertEquals(Integer.valueOf(1), layers.get("a"));
+        assertEquals(Integer.valueOf(1), layers.get("b"));
+    }
+
+    @Test
+    public void estimate_picksHighestLayerThatFitsWithHeadroom() {
+        SimulcastController controller = new SimulcastController(10.0);
+        controller.onStats("fast", report(2_000_000, true));
+        // 1,200,000 / 0.85 보다 조금 작으면 원본 Layer 는 맞지 않음
+        controller.onStats("edge", report(1_400_000, true));
+        controller.onStats("medium", report(700_000, true));
+        controller.onStats("slow", report(100_000, true));
+
+        Map<String, Integer> layers = controller.selectLayers(Arrays.asList("fast", "edge", "medium", "slow"));
+        assertEquals(Integer.valueOf(0), layers.get("fast"));
+        assertEquals(Integer.valueOf(1), layers.get("edge"));
+        assertEquals(Integer.valueOf(1), layers.get("medium"));
+        assertEquals(Integer.valueOf(2), layers.get("slow"));
+    }
+
+    @Test
+    public void notNominatedPair_isIgnored() {
+        SimulcastController controller = new SimulcastController(10.0);
+        controller.onStats("a", report(2_000_000, false));
+
+        assertEquals(Integer.valueOf(1), controller.selectLayers(Collections.singletonList("a")).get("a"));
+    }
+
+    @Test
+    public void overBudget_stepsDownMostExpensiveViewersFirst() {
+        SimulcastController controller = new SimulcastController(1.0);
+        controller.onStats("a", report(2_000_000, true));
+        controller.onStats("b", report(2_000_000, true));
+        controller.onStats("c", report(100_000, true));
+
+        Map<String, Integer> layers = controller.selectLayers(Arrays.asList("a", "b", "c"));
+        // 2.0625 -> 원본 두 개를 한 단계씩 낮추면 0.5625
+        assertEquals(Integer.valueOf(1), layers.get("a"));
+        assertEquals(Integer.valueOf(1), layers.get("b"));
+        assertEquals(Integer.valueOf(2), layers.get("c"));
+        assertTrue(totalCost(layers) <= 1.0);
+    }
+
+    @Test
+    public void overBudget_downgradesOnlyAsFarAsNeeded() {
+        SimulcastController controller = new SimulcastController(1.3);
+        controller.onStats("a", report(2_000_000, true));
+        controller.onStats("b", report(2_000_000, true));
+
+        Map<String, Integer> layers = controller.selectLayers(Arrays.asList("a", "b"));
+        // 한 명만 낮추면 1.25 로 예산 안
+        assertEquals(1, Math.abs(layers.get("a") - layers.get("b")));
+        assertEquals(1.25, totalCost(layers), 1e-9);
+    }
+
+    @Test
+    public void budgetBelowLowestLayers_stopsAtLowestLayer() {
+        SimulcastController controller = new SimulcastController(0.1);
+        Map<String, Integer> layers = controller.selectLayers(Arrays.asList("a", "b"));
+
+        assertEquals(Integer.valueOf(2), layers.get("a"));
+        assertEquals(Integer.valueOf(2), layers.get("b"));
+    }
+
+    @Test
+    public void removedViewer_fallsBackToDefault() {
+        SimulcastController controller = new SimulcastController(10.0);
+        controller.onStats("a", report(2_000_000, true));
+        controller.remove("a");
+
+        assertEquals(Integer.valueOf(1), controller.selectLayers(Collections.singletonList("a")).get("a"));
+    }
+}